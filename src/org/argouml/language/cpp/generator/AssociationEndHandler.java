@@ -39,21 +39,22 @@
 package org.argouml.language.cpp.generator;
 
 import static org.argouml.model.Model.getAggregationKind;
-import static org.argouml.model.Model.getExtensionMechanismsFactory;
-import static org.argouml.model.Model.getExtensionMechanismsHelper;
 import static org.argouml.model.Model.getFacade;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.argouml.language.cpp.profile.ProfileCpp;
 
 /**
  * Handler for pre and post processing the generation of an AssociationEnd, 
- * specifically, it will modify the AssociationEnd before generation of C++ 
- * to enable semantically correct C++ code generation.
+ * specifically, it will mark the other AssociationEnds as pointers before 
+ * generation of C++ to enable semantically correct C++ code generation.
+ * The marks are kept by the generation, instead of being added as tagged 
+ * values to the model, so that concurrent generations don't see them.
  * 
  * See <a href="http://argouml.tigris.org/issues/show_bug.cgi?id=4541">issue 
  * #4541</a> for details on why this is needed.
@@ -64,10 +65,14 @@ class AssociationEndHandler {
 
     private Object associationEnd;
 
-    private List<Object[]> modifiedObjects = new ArrayList<Object[]>();
+    private Set<Object> pointerEnds;
 
-    AssociationEndHandler(Object theAssociationEnd) {
+    private List<Object> markedEnds = new ArrayList<Object>();
+
+    AssociationEndHandler(Object theAssociationEnd, 
+            Set<Object> thePointerEnds) {
         this.associationEnd = theAssociationEnd;
+        this.pointerEnds = thePointerEnds;
     }
 
     void pre() {
@@ -86,16 +91,8 @@ class AssociationEndHandler {
                         break;
                     }
                 }
-                if (addPtrTV) {
-                    ProfileCpp.getTagDefinition(ProfileCpp.TV_NAME_POINTER);
-                    Object ptrTV = getExtensionMechanismsFactory().
-                        buildTaggedValue(
-                            ProfileCpp.getTagDefinition(
-                                ProfileCpp.TV_NAME_POINTER), 
-                            new String[] {"true"});
-                    getExtensionMechanismsHelper().addTaggedValue(
-                            otherAE, ptrTV);
-                    modifiedObjects.add(new Object[] {otherAE, ptrTV});
+                if (addPtrTV && pointerEnds.add(otherAE)) {
+                    markedEnds.add(otherAE);
                 }
                 
             }
@@ -103,10 +100,7 @@ class AssociationEndHandler {
     }
 
     void post() {
-        for (Object[] modifiedOtherAE : modifiedObjects) {
-            getExtensionMechanismsHelper().removeTaggedValue(
-                    modifiedOtherAE[0], modifiedOtherAE[1]);
-        }
+        pointerEnds.removeAll(markedEnds);
     }
 
 }
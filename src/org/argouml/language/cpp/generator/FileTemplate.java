@@ -0,0 +1,224 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.generator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The template of the top of the generated files, i.e., the
+ * <code>header_template</code> or <code>cpp_template</code> file, parsed
+ * into literal text and placeholders, so that it is applied by
+ * concatenation.
+ *
+ * As it was done line by line, the first occurrence of each placeholder in a
+ * line is replaced by its value, unless this is null or empty, in which case
+ * the placeholder is kept.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+final class FileTemplate {
+
+    /** The placeholder of the name of the generated file. */
+    static final int FILENAME = 0;
+
+    /** The placeholder of the date of the generation. */
+    static final int DATE = 1;
+
+    /** The placeholder of the year of the generation. */
+    static final int YEAR = 2;
+
+    /** The placeholder of the author of the classifier. */
+    static final int AUTHOR = 3;
+
+    /** The placeholder of the email of the author. */
+    static final int EMAIL = 4;
+
+    private static final String[] PLACEHOLDERS = {
+        "|FILENAME|", "|DATE|", "|YEAR|", "|AUTHOR|", "|EMAIL|",
+    };
+
+    /**
+     * System newline separator.
+     */
+    private static final String LINE_SEPARATOR =
+        System.getProperty("line.separator");
+
+    /**
+     * The segments of the template, which are either literal text, as
+     * Strings, or placeholders, as Integers.
+     */
+    private final List<Object> segments = new ArrayList<Object>();
+
+    private final long lastModified;
+
+    private final long length;
+
+    private FileTemplate(long theLastModified, long theLength) {
+        lastModified = theLastModified;
+        length = theLength;
+    }
+
+    /**
+     * Read and parse a template file, decoded as the existing generated
+     * files, see {@link Section#decode(byte[])}.
+     *
+     * @param f the template file
+     * @return the template
+     * @throws IOException if the file can't be read
+     */
+    static FileTemplate load(File f) throws IOException {
+        FileTemplate template = new FileTemplate(f.lastModified(), f.length());
+        BufferedReader reader = new BufferedReader(new StringReader(
+            Section.decode(Section.readBytes(f))));
+        try {
+            StringBuffer literal = new StringBuffer();
+            for (String line = reader.readLine(); line != null;
+                 line = reader.readLine()) {
+                template.parseLine(line, literal);
+                literal.append(LINE_SEPARATOR);
+            }
+            if (literal.length() > 0) {
+                template.segments.add(literal.toString());
+            }
+        } finally {
+            reader.close();
+        }
+        return template;
+    }
+
+    private void parseLine(String line, StringBuffer literal) {
+        // the start of the placeholders of the line, or -1
+        int[] starts = new int[PLACEHOLDERS.length];
+        for (int i = 0; i < PLACEHOLDERS.length; i++) {
+            starts[i] = line.indexOf(PLACEHOLDERS[i]);
+        }
+        int pos = 0;
+        for (;;) {
+            int next = -1;
+            for (int i = 0; i < starts.length; i++) {
+                if (starts[i] >= pos
+                    && (next == -1 || starts[i] < starts[next])) {
+                    next = i;
+                }
+            }
+            if (next == -1) {
+                break;
+            }
+            literal.append(line.substring(pos, starts[next]));
+            if (literal.length() > 0) {
+                segments.add(literal.toString());
+                literal.setLength(0);
+            }
+            segments.add(Integer.valueOf(next));
+            pos = starts[next] + PLACEHOLDERS[next].length();
+        }
+        literal.append(line.substring(pos));
+    }
+
+    /**
+     * @param f the template file
+     * @return true if the file didn't change since the template was read
+     */
+    boolean isUpToDate(File f) {
+        return f.lastModified() == lastModified && f.length() == length;
+    }
+
+    /**
+     * Apply the template.
+     *
+     * @param values the values of the placeholders, indexed by
+     *            {@link #FILENAME}, {@link #DATE}, {@link #YEAR},
+     *            {@link #AUTHOR} and {@link #EMAIL}
+     * @return the text of the template with the values of the placeholders
+     */
+    String apply(String[] values) {
+        StringBuffer sb = new StringBuffer();
+        for (Object segment : segments) {
+            if (segment instanceof Integer) {
+                int i = ((Integer) segment).intValue();
+                if (values[i] != null && values[i].length() > 0) {
+                    sb.append(values[i]);
+                } else {
+                    sb.append(PLACEHOLDERS[i]);
+                }
+            } else {
+                sb.append((String) segment);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Match the template, applied with the given values, at the start of a
+     * text. A placeholder which value is null matches any text within a line,
+     * such as the date of an earlier generation, while one which value is
+     * empty matches the placeholder itself, as it is kept by
+     * {@link #apply(String[])}.
+     *
+     * @param text the text, e.g., of a generated file
+     * @param values the values of the placeholders, as for
+     *            {@link #apply(String[])}
+     * @return the length of the start of the text matched by the template,
+     *         or -1 if the text doesn't start with the template
+     */
+    int match(String text, String[] values) {
+        return match(text, values, 0, 0, false);
+    }
+
+    /**
+     * Match the segments of the template from the given one.
+     *
+     * @param any true if the previous placeholders match any text
+     */
+    private int match(String text, String[] values, int segment, int pos,
+            boolean any) {
+        if (segment == segments.size()) {
+            // as the lines end with a literal, a placeholder is never last
+            return any ? -1 : pos;
+        }
+        Object o = segments.get(segment);
+        String s;
+        if (o instanceof Integer) {
+            int i = ((Integer) o).intValue();
+            if (values[i] == null) {
+                return match(text, values, segment + 1, pos, true);
+            }
+            s = values[i].length() > 0 ? values[i] : PLACEHOLDERS[i];
+        } else {
+            s = (String) o;
+        }
+        if (!any) {
+            return text.startsWith(s, pos)
+                ? match(text, values, segment + 1, pos + s.length(), false)
+                : -1;
+        }
+        int eol = text.indexOf('\n', pos);
+        for (int next = text.indexOf(s, pos);
+             next != -1 && (eol == -1 || next <= eol);
+             next = text.indexOf(s, next + 1)) {
+            int end = match(text, values, segment + 1, next + s.length(),
+                false);
+            if (end != -1) {
+                return end;
+            }
+        }
+        return -1;
+    }
+}
@@ -38,26 +38,35 @@
 
 package org.argouml.language.cpp.generator;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
 import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.argouml.configuration.Configuration;
@@ -73,10 +82,12 @@ import org.argouml.uml.generator.SourceUnit;
 /**
  * Class to generate C++ source code.
  *
- * WARNING: Don't know if this is a threat (and I think it's not), but this
- * class is NOT THREAD SAFE. DO NOT CALL METHODS FROM DIFFERENT THREADS.
- * At the moment, it works, but this is just in case someone in the future
- * tries to generate 1265 files in parallel and guesses why it doesn't work :-)
+ * The generator only holds its configuration. The state of each invocation,
+ * e.g., the pass and the includes of the file being generated, is kept in a
+ * {@link GenerationContext} of its own, therefore, the generator is thread
+ * safe and reentrant: notations may be rendered while files are generated
+ * and several generations may run at the same time in different threads.
+ * These mustn't generate the same files, though.
  */
 public class GeneratorCpp implements CodeGenerator {
 
@@ -90,12 +101,14 @@ public class GeneratorCpp implements CodeGenerator {
 
     // Customizable variables
 
-    private boolean verboseDocs = false;
-    private boolean lfBeforeCurly = false;
-    private String indent = "    "; // customizable (non final) indent
+    private volatile boolean verboseDocs = false;
+    private volatile boolean lfBeforeCurly = false;
+    private volatile String indent = "    "; // customizable (non final) indent
     
-    private boolean hdrGuardUpperCase = false;
-    private boolean hdrGuardGUID = false;
+    private volatile boolean hdrGuardUpperCase = false;
+    private volatile boolean hdrGuardGUID = false;
+
+    private volatile int threads = 1;
     
     // Configuration keys for the above configurable variables
     private static final ConfigurationKey KEY_CPP_INDENT =
@@ -112,46 +125,73 @@ public class GeneratorCpp implements CodeGenerator {
         Configuration.makeKey(LANGUAGE_NAME, "header-guard-guid");
     private static final ConfigurationKey KEY_CPP_DEFAULT_INLINE =
         Configuration.makeKey(LANGUAGE_NAME, "default-inline");
-
-    private static Section sect;
+    private static final ConfigurationKey KEY_CPP_THREADS =
+        Configuration.makeKey(LANGUAGE_NAME, "threads");
 
     /**
-     * Store actual namespace, to avoid unneeded curly braces.
-     *
-     * @author Achim Spangler
-     * @since 2002-12-07
+     * The state of a single invocation of the generator, i.e., of the
+     * generation of some files or of the notation of a model element. As each
+     * invocation has its own, the generator may be used by several threads
+     * at the same time.
      */
-    private Object actualNamespace;
+    private static class GenerationContext {
 
-    /** Current classifier, for which the code is being generated.
-     */
-    private Object currClass = null;
+        /**
+         * The pass of the generation, one of NONE_PASS, HEADER_PASS and
+         * SOURCE_PASS.
+         */
+        private int generatorPass = NONE_PASS;
 
-    /**
-     * Set of the local files to include with #include "file.h"
-     * Automatically generated from classifier dependencies.
-     */
-    private Set localInc = new TreeSet();
+        /**
+         * Store actual namespace, to avoid unneeded curly braces.
+         *
+         * @author Achim Spangler
+         * @since 2002-12-07
+         */
+        private Object actualNamespace;
 
-    /**
-     * Set of the external files to include with #include <file.h>
-     * Automatically generated from classifier dependencies.
-     */
-    private Set extInc = new TreeSet();
+        /** Current classifier, for which the code is being generated.
+         */
+        private Object currClass = null;
 
-    /**
-     * Set of the system files to include, like #include <vector>
-     * Automatically generated.
-     */
-    private Set systemInc = new TreeSet();
- 
-    /** Set of classifier that needs to be defined (i.e. #included)
-     */
-    private Set includeCls = new LinkedHashSet();
+        /**
+         * Set of the local files to include with #include "file.h"
+         * Automatically generated from classifier dependencies.
+         */
+        private Set localInc = new TreeSet();
 
-    /** Set of classifier that only needs to be predeclared
-     */
-    private Set predeclCls = new LinkedHashSet();
+        /**
+         * Set of the external files to include with #include <file.h>
+         * Automatically generated from classifier dependencies.
+         */
+        private Set extInc = new TreeSet();
+
+        /**
+         * Set of the system files to include, like #include <vector>
+         * Automatically generated.
+         */
+        private Set systemInc = new TreeSet();
+
+        /** Set of classifier that needs to be defined (i.e. #included)
+         */
+        private Set includeCls = new LinkedHashSet();
+
+        /** Set of classifier that only needs to be predeclared
+         */
+        private Set predeclCls = new LinkedHashSet();
+
+        /**
+         * The association ends which are generated as pointers, although
+         * they aren't tagged as such.
+         * @see AssociationEndHandler
+         */
+        private Set<Object> pointerEnds = new HashSet<Object>();
+
+        /**
+         * Set of already-generated classifiers.
+         */
+        private Set generatedFiles = new HashSet();
+    }
 
     /**
      * System newline separator.
@@ -194,7 +234,6 @@ public class GeneratorCpp implements CodeGenerator {
     private static final int NONE_PASS = 1;
     private static final int HEADER_PASS = 2;
     private static final int SOURCE_PASS = 3;
-    private static int generatorPass = NONE_PASS;
 
     /**
      * use Tag generation for generation of: doccomment, simple tags of
@@ -227,6 +266,13 @@ public class GeneratorCpp implements CodeGenerator {
      * but could be "" if a "using namsepace std;" directive is used.  
      */
     private String stdPrefix = "std::";
+
+    /**
+     * The parsed templates of the top of the files, by the path of their
+     * template files.
+     */
+    private final Map<String, FileTemplate> templates =
+        new ConcurrentHashMap<String, FileTemplate>();
     
     /**
      * Get the instance of the singleton for the C++ generator.
@@ -247,69 +293,71 @@ public class GeneratorCpp implements CodeGenerator {
         loadConfig();
     }
 
-    /** Reset the generator in the initial state before
+    /** Reset the context of the generator in the initial state before
      * starting to generate code.
      */
-    protected void cleanupGenerator() {
+    private void cleanupGenerator(GenerationContext ctx) {
         // clears collections of dependencies
-        localInc.clear();
-        extInc.clear();
-        systemInc.clear();
-        includeCls.clear();
-        predeclCls.clear();
+        ctx.localInc.clear();
+        ctx.extInc.clear();
+        ctx.systemInc.clear();
+        ctx.includeCls.clear();
+        ctx.predeclCls.clear();
         // set currClass to null, so if it's used when it shouldn't
         // it will raise a NullPointerException
-        currClass = null;
-        actualNamespace = null;
+        ctx.currClass = null;
+        ctx.actualNamespace = null;
     }
 
-    /** Set up the generator in order to generate the code
+    /** Set up the context of the generator in order to generate the code
      * for 'cls'.
+     * @param ctx The context of the generation
      * @param cls The classifier to generate the code for
      */
-    protected void setupGenerator(Object cls) {
-        cleanupGenerator();
-        currClass = cls;
+    private void setupGenerator(GenerationContext ctx, Object cls) {
+        cleanupGenerator(ctx);
+        ctx.currClass = cls;
     }
 
     /** Internal helper that generates the file content (.cpp or .h)
      * and returns it as a String, without actually creating a file.
      */
-    private String generateFileAsString(Object o, String pathname) {
-        setupGenerator(o);
-        if (generatorPass == SOURCE_PASS  && getFacade().isAInterface(o))
+    private String generateFileAsString(GenerationContext ctx, Object o,
+            String pathname) {
+        setupGenerator(ctx, o);
+        if (ctx.generatorPass == SOURCE_PASS  && getFacade().isAInterface(o))
             return ""; // don't generate the .cpp, it's useless.
 
         String headerTop = generateHeaderTop(pathname);
-        String header = generateHeader(o);
+        String header = generateHeader(ctx, o);
         // This can only be a classifier, right? - tfm
-        String src = generateClassifier(o);
+        String src = generateClassifier(ctx, o);
         
         String inlinedMethods = null;
-        if (generatorPass == HEADER_PASS) {
-            inlinedMethods = generateInlinedMethodsOutsideClass(o);
+        if (ctx.generatorPass == HEADER_PASS) {
+            inlinedMethods = generateInlinedMethodsOutsideClass(ctx, o);
         }
         
-        String footer = generateFooter();
+        String footer = generateFooter(ctx);
         // generate #includes and predeclarations
         // this must be *after* generate()
         StringBuffer incl = new StringBuffer();
-        if (generatorPass == SOURCE_PASS) {
-            localInc.add(getFacade().getName(o) + ".h");
+        if (ctx.generatorPass == SOURCE_PASS) {
+            ctx.localInc.add(getFacade().getName(o) + ".h");
         }
-        generateIncludes(incl);
-        if (generatorPass == HEADER_PASS) {
+        generateIncludes(ctx, incl);
+        if (ctx.generatorPass == HEADER_PASS) {
             if (incl.length() > 0) incl.append(LINE_SEPARATOR);
-            generatePredeclare(incl);
+            generatePredeclare(ctx, incl);
         }
         // paste all the pieces in the final result
         StringBuffer result = new StringBuffer();
         String guard = new String();
-        if (generatorPass == HEADER_PASS) {
+        if (ctx.generatorPass == HEADER_PASS) {
             String name = getFacade().getName(o);
             String guardPack =
                 generateRelativePackage(o, null, "_").substring(1);
-            guard = name + getFileExtension().replace('.', '_');
+            guard = name + getFileExtension(ctx).replace('.', '_');
             if (guardPack.length() > 0) {
                 guard = guardPack + "_" + guard;
             }
@@ -330,12 +378,12 @@ public class GeneratorCpp implements CodeGenerator {
         result.append(header);
         result.append(src);
         
-        if (generatorPass == HEADER_PASS && inlinedMethods != null) {
+        if (ctx.generatorPass == HEADER_PASS && inlinedMethods != null) {
             result.append(inlinedMethods);
         }
         
         result.append(footer);
-        if (generatorPass == HEADER_PASS) {
+        if (ctx.generatorPass == HEADER_PASS) {
             result.append(LINE_SEPARATOR);
             result.append("#endif" + " // " + guard);
             result.append(LINE_SEPARATOR);
@@ -349,15 +397,13 @@ public class GeneratorCpp implements CodeGenerator {
      * @return the generated code as a string
      */
     String generateCpp(Object o) {
-        generatorPass = SOURCE_PASS;
+        GenerationContext ctx = new GenerationContext();
+        ctx.generatorPass = SOURCE_PASS;
         String name =
             generateRelativePackage(o, null, "/").substring(1);
         if (name.length() > 0) name += "/";
         name += getFacade().getName(o) + ".cpp";
-        String ret = generateFileAsString(o, name);
-        cleanupGenerator();
-        generatorPass = NONE_PASS;
-        return ret;
+        return generateFileAsString(ctx, o, name);
     }
 
     /**
@@ -366,15 +412,13 @@ public class GeneratorCpp implements CodeGenerator {
      * @return the generated header as a string
      */
     String generateH(Object o) {
-        generatorPass = HEADER_PASS;
+        GenerationContext ctx = new GenerationContext();
+        ctx.generatorPass = HEADER_PASS;
         String name =
             generateRelativePackage(o, null, "/").substring(1);
         if (name.length() > 0) name += "/";
         name += getFacade().getName(o) + ".h";
-        String ret = generateFileAsString(o, name);
-        cleanupGenerator();
-        generatorPass = NONE_PASS;
-        return ret;
+        return generateFileAsString(ctx, o, name);
     }
 
     /**
@@ -416,8 +460,8 @@ public class GeneratorCpp implements CodeGenerator {
     /** 2002-11-28 Achim Spangler
      * @return file extension for actual generation pass
      */
-    private String getFileExtension() {
-        if (generatorPass == HEADER_PASS) return ".h";
+    private String getFileExtension(GenerationContext ctx) {
+        if (ctx.generatorPass == HEADER_PASS) return ".h";
         return ".cpp";
     }
 
@@ -437,7 +481,8 @@ public class GeneratorCpp implements CodeGenerator {
      * create the needed directories for the derived appropriate pathname
      * @return Returns the filename with full path of cls.
      */
-    private String createDirectoriesPathname(Object cls, String path) {
+    private String createDirectoriesPathname(GenerationContext ctx, Object cls,
+            String path) {
         String name = getFacade().getName(cls);
         if (name == null || name.length() == 0) {
             return "";
@@ -449,13 +494,14 @@ public class GeneratorCpp implements CodeGenerator {
 
         String packagePath = generateRelativePackage(cls, null, ".");
         packagePath = packagePath.substring(1);
-        String filename = name + getFileExtension();
+        String filename = name + getFileExtension(ctx);
 
         int lastIndex = -1;
         do {
             File f = new File (path);
             if (!f.isDirectory()) {
-                if (!f.mkdir()) {
+                // another generation may have made it meanwhile
+                if (!f.mkdir() && !f.isDirectory()) {
                     LOG.severe(" could not make directory " + path);
                     return null;
                 }
@@ -489,102 +535,77 @@ public class GeneratorCpp implements CodeGenerator {
     }
 
     /** 2002-12-07 Achim Spangler
-     * @return date
-     */
-    private String getDate() {
-        GregorianCalendar cal = new GregorianCalendar();
-        DateFormat df;
-        df = DateFormat.getDateInstance(DateFormat.DEFAULT);
-        return df.format(cal.getTime());
-    }
-
-    /** 2002-12-07 Achim Spangler
-     * @return year
+     * get the template of the content for the top of the file
+     * @return the template or null if there isn't such a template file
      */
-    private String getYear() {
-        GregorianCalendar cal = new GregorianCalendar();
-        return Integer.toString(cal.get(Calendar.YEAR));
-    }
-
-    /** 2002-12-07 Achim Spangler
-     * write template content on top of file
-     */
-    private void writeTemplate(Object cls, String path, BufferedWriter fos) {
+    private FileTemplate getTemplate(GenerationContext ctx, Object cls,
+            String path) {
         String templatePathName = path + "/templates/";
-        String fileName = getFacade().getName(cls);
         String tagTemplatePathName = getFacade().getTaggedValueValue(
                 cls, TV_NAME_TEMPLATE_PATH);
-        String authorTag = getFacade().getTaggedValueValue(cls, 
-                TV_NAME_AUTHOR);
-        String emailTag = getFacade().getTaggedValueValue(cls, 
-                TV_NAME_EMAIL);
         if (tagTemplatePathName != null && tagTemplatePathName.length() > 0)
             templatePathName = tagTemplatePathName;
-        if (generatorPass == HEADER_PASS) {
+        if (ctx.generatorPass == HEADER_PASS) {
             templatePathName = templatePathName + "header_template";
-            fileName = fileName + ".h";
         }
         else {
             templatePathName = templatePathName + "cpp_template";
-            fileName = fileName + ".cpp";
         }
-        
-        File templateFile = new File(templatePathName);
-        if (templateFile.exists()) {
-            boolean eof = false;
-            BufferedReader templateFileReader = null;
-            try {
-                // TODO: This is using the default platform character encoding
-                // specifying an encoding will produce more predictable results
-                templateFileReader =
-                    new BufferedReader(new FileReader(
-                        templateFile.getAbsolutePath()));
-                while (!eof) {
-                    String lineStr = templateFileReader.readLine();
-                    if (lineStr == null) {
-                        eof = true;
-                    } else {
-                        StringBuffer line = new StringBuffer(lineStr);
-                        replaceToken(line, "|FILENAME|", fileName);
-                        replaceToken(line, "|DATE|", getDate());
-                        replaceToken(line, "|YEAR|", getYear());
-                        replaceToken(line, "|AUTHOR|", authorTag);
-                        replaceToken(line, "|EMAIL|", emailTag);
-
-                        fos.write(line + LINE_SEPARATOR);
-                    }
-                }
-                templateFileReader.close();
-            }
-            catch (IOException exp) { }
-            finally {
-                try {
-                    if (templateFileReader != null) templateFileReader.close();
-                }
-                catch (IOException exp) {
-                    LOG.severe("FAILED: " + templateFile.getPath());
-                }
-            }
+        return getTemplate(new File(templatePathName));
+    }
+
+    /**
+     * Get the values of the placeholders of the template for the top of the
+     * file.
+     *
+     * @param date the date of the generation
+     * @param year the year of the generation
+     * @return the values, as for {@link FileTemplate#apply(String[])}
+     */
+    private String[] getTemplateValues(GenerationContext ctx, Object cls,
+            String date, String year) {
+        String fileName = getFacade().getName(cls);
+        if (ctx.generatorPass == HEADER_PASS) {
+            fileName = fileName + ".h";
+        }
+        else {
+            fileName = fileName + ".cpp";
         }
+        String[] values = new String[5];
+        values[FileTemplate.FILENAME] = fileName;
+        values[FileTemplate.DATE] = date;
+        values[FileTemplate.YEAR] = year;
+        values[FileTemplate.AUTHOR] = getFacade().getTaggedValueValue(cls, 
+                TV_NAME_AUTHOR);
+        values[FileTemplate.EMAIL] = getFacade().getTaggedValueValue(cls, 
+                TV_NAME_EMAIL);
+        return values;
     }
 
     /**
-     * Replace the first occurrences of tokenName with tokenValue.
+     * Get the parsed template of a template file, which is read again only
+     * if it changed since it was last read.
      *
-     * @param line is the line where we do the replacing.
-     * @param tokenName is the string we search for.
-     * @param tokenValue is the value we replace.
+     * @param templateFile the template file
+     * @return the template or null if there isn't such a template file
      */
-    private void replaceToken(StringBuffer line, String tokenName,
-            String tokenValue) {
-        int tokenStart;
-        tokenStart = line.toString().indexOf(tokenName);
-        if ((tokenStart != -1)
-            && (tokenValue != null && tokenValue.length() > 0)) {
-            line.replace(tokenStart,
-                 tokenStart + tokenName.length(),
-                 tokenValue);
+    private FileTemplate getTemplate(File templateFile) {
+        String key = templateFile.getAbsolutePath();
+        FileTemplate template = templates.get(key);
+        if (template == null || !template.isUpToDate(templateFile)) {
+            if (!templateFile.exists()) {
+                templates.remove(key);
+                return null;
+            }
+            try {
+                template = FileTemplate.load(templateFile);
+            } catch (IOException exp) {
+                LOG.severe("FAILED: " + templateFile.getPath());
+                return null;
+            }
+            templates.put(key, template);
         }
+        return template;
     }
 
     /** 2002-11-28 Achim Spangler
@@ -606,23 +627,24 @@ public class GeneratorCpp implements CodeGenerator {
      * Helper for checkIncludeNeeded4Element. Returns true if
      * an #include is needed.
      */
-    private boolean checkInclude4UsageIndirection(boolean isIndirect,
-            String usageTag) {
+    private boolean checkInclude4UsageIndirection(GenerationContext ctx,
+            boolean isIndirect, String usageTag) {
         if (isIndirect) {
             // needs only to be included in the .cpp
             if (usageTag.indexOf("header") != -1) {
                 // but user explicitly requested its presence in the header
-                return generatorPass == HEADER_PASS;
+                return ctx.generatorPass == HEADER_PASS;
             } else {
-                return generatorPass == SOURCE_PASS;
+                return ctx.generatorPass == SOURCE_PASS;
             }
         }
 
         // must be included in the header, whatever usageTag is
-        return generatorPass == HEADER_PASS;
+        return ctx.generatorPass == HEADER_PASS;
     }
 
-    private boolean checkIncludeNeeded4Element(Object cls) {
+    private boolean checkIncludeNeeded4Element(GenerationContext ctx,
+            Object cls) {
         String usageTag = "";
         boolean predeclareCandidate = false;
 
@@ -642,40 +664,46 @@ public class GeneratorCpp implements CodeGenerator {
                 }
             }
         }
-        return checkInclude4UsageIndirection(predeclareCandidate, usageTag);
+        if (ctx.pointerEnds.contains(cls)) {
+            predeclareCandidate = true;
+        }
+        return checkInclude4UsageIndirection(ctx, predeclareCandidate,
+            usageTag);
     }
 
-    private StringBuffer generateIncludes(StringBuffer sb) {
-        for (Iterator it = systemInc.iterator(); it.hasNext(); ) {
+    private StringBuffer generateIncludes(GenerationContext ctx,
+            StringBuffer sb) {
+        for (Iterator it = ctx.systemInc.iterator(); it.hasNext(); ) {
             String inc = (String) it.next();
             sb.append("#include <");
             sb.append(inc).append('>').append(LINE_SEPARATOR);
         }
         // separate system from external headers
-        if (systemInc.size() > 0) sb.append(LINE_SEPARATOR);
-        for (Iterator it = extInc.iterator(); it.hasNext(); ) {
+        if (ctx.systemInc.size() > 0) sb.append(LINE_SEPARATOR);
+        for (Iterator it = ctx.extInc.iterator(); it.hasNext(); ) {
             String inc = (String) it.next();
             sb.append("#include <");
             sb.append(inc).append('>').append(LINE_SEPARATOR);
         }
         // separate external from local headers
-        if (extInc.size() > 0) sb.append(LINE_SEPARATOR);
-        for (Iterator it = localInc.iterator(); it.hasNext(); ) {
+        if (ctx.extInc.size() > 0) sb.append(LINE_SEPARATOR);
+        for (Iterator it = ctx.localInc.iterator(); it.hasNext(); ) {
             String inc = (String) it.next();
             sb.append("#include \"").append(inc).append("\"" + LINE_SEPARATOR);
         }
         return sb;
     }
 
-    private StringBuffer generatePredeclare(StringBuffer sb) {
-        for (Iterator it = predeclCls.iterator(); it.hasNext(); ) {
+    private StringBuffer generatePredeclare(GenerationContext ctx,
+            StringBuffer sb) {
+        for (Iterator it = ctx.predeclCls.iterator(); it.hasNext(); ) {
             Object cls = it.next();
             String name = getFacade().getName(cls);
-            sb.append(generateHeaderPackageStart(cls));
+            sb.append(generateHeaderPackageStart(ctx, cls));
             sb.append("class ").append(name);
             sb.append(";").append(LINE_SEPARATOR);
         }
-        sb.append(generateHeaderPackageEnd());
+        sb.append(generateHeaderPackageEnd(ctx));
         return sb;
     }
 
@@ -685,7 +713,8 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls The classifier which code is being generated for.
      * @param source if true parses source_incl tags, else header_incl.
      */
-    private void addUserHeaders(Object cls, boolean source) {
+    private void addUserHeaders(GenerationContext ctx, Object cls,
+            boolean source) {
         Iterator iter = getFacade().getTaggedValues(cls);
         String tagPrefix;
         if (source)
@@ -699,11 +728,11 @@ public class GeneratorCpp implements CodeGenerator {
             if (tag != null && tag.equals(tagPrefix)) {
                 String name = getFacade().getValueOfTag(tv);
                 if (name.length() > 2 && name.charAt(0) == '<') {
-                    systemInc.add(name.substring(1, name.length() - 1));
+                    ctx.systemInc.add(name.substring(1, name.length() - 1));
                 } else if (name.length() > 2 && name.charAt(0) == '"') {
-                    localInc.add(name.substring(1, name.length() - 1));
+                    ctx.localInc.add(name.substring(1, name.length() - 1));
                 } else if (name.length() > 0) { // skip empty values
-                    localInc.add(name);
+                    ctx.localInc.add(name);
                 }
             }
         }
@@ -715,8 +744,9 @@ public class GeneratorCpp implements CodeGenerator {
      * @param dep The classifier whose currClass depends on.
      * @param predecl If true then only a predeclaration is needed
      */
-    private void addDependency(Object dep, boolean predecl) {
-        if (generatorPass == NONE_PASS) {
+    private void addDependency(GenerationContext ctx, Object dep,
+            boolean predecl) {
+        if (ctx.generatorPass == NONE_PASS) {
             return; // skip dependencies if generating notation
         }
         if (!(getFacade().isAClass(dep)) && !(getFacade().isAInterface(dep))) {
@@ -724,25 +754,25 @@ public class GeneratorCpp implements CodeGenerator {
             // TODO: check for namespace when using directives are implemented
             return;
         }
-        if (predecl && !includeCls.contains(dep)) {
-            if (generatorPass == HEADER_PASS) {
-                predeclCls.add(dep);
+        if (predecl && !ctx.includeCls.contains(dep)) {
+            if (ctx.generatorPass == HEADER_PASS) {
+                ctx.predeclCls.add(dep);
             }
         } else {
-            if (predeclCls.contains(dep)) {
-                predeclCls.remove(dep);
+            if (ctx.predeclCls.contains(dep)) {
+                ctx.predeclCls.remove(dep);
             }
-            if (includeCls.add(dep)) {
+            if (ctx.includeCls.add(dep)) {
                 // dep was not already in includeCls
-                Object ns = getFacade().getNamespace(currClass);
+                Object ns = getFacade().getNamespace(ctx.currClass);
                 String name = getFacade().getName(dep);
                 // use '/', not FILE_SEPARATOR (this is intentional)
                 String path =
                     generateRelativePackage(dep, ns, "/");
-                Set inc = localInc;
+                Set inc = ctx.localInc;
                 if (path.startsWith("/")) { // external include
                     path = path.substring(1); // remove leading /
-                    inc = extInc;
+                    inc = ctx.extInc;
                 }
                 if (path.length() > 0) {
                     inc.add(path + "/" + name + ".h");
@@ -831,8 +861,9 @@ public class GeneratorCpp implements CodeGenerator {
 
     /** Generate name with package specs, relative to actualNamespace.
      */
-    private String generateNameWithPkgSelection(Object item) {
-        Object pkg = actualNamespace;
+    private String generateNameWithPkgSelection(GenerationContext ctx,
+            Object item) {
+        Object pkg = ctx.actualNamespace;
         String name = generateNameWithPkgSelection(item, pkg);
         if (name.startsWith("::")) {
             name = name.substring(2); // remove leading ::
@@ -845,14 +876,15 @@ public class GeneratorCpp implements CodeGenerator {
 
     /** Generate the code to go from the current namespace to cls's one
      */
-    private String generateHeaderPackageStart(Object cls) {
+    private String generateHeaderPackageStart(GenerationContext ctx,
+            Object cls) {
         StringBuffer sb = new StringBuffer(80);
 
-        if (actualNamespace != null) {
-            Object lastSearch = actualNamespace;
+        if (ctx.actualNamespace != null) {
+            Object lastSearch = ctx.actualNamespace;
             // iterate while fromSearch != null, but iterate one time
             // when it is null too, because it's the global namespace
-            for (Object fromSearch = actualNamespace;
+            for (Object fromSearch = ctx.actualNamespace;
                     fromSearch != null;
                     lastSearch = getNamespaceWithoutModel(fromSearch)) {
                 fromSearch = lastSearch;
@@ -878,7 +910,7 @@ public class GeneratorCpp implements CodeGenerator {
                 sb.insert(0, generateHeaderPackageStartSingle(toSearch));
             }
         }
-        actualNamespace = getNamespaceWithoutModel(cls);
+        ctx.actualNamespace = getNamespaceWithoutModel(cls);
         return sb.toString();
     }
 
@@ -896,28 +928,28 @@ public class GeneratorCpp implements CodeGenerator {
         return null;
     }
 
-    private String generateHeaderPackageEnd() {
+    private String generateHeaderPackageEnd(GenerationContext ctx) {
         StringBuffer sb = new StringBuffer(20);
 
-        for (Object closeIt = actualNamespace;
+        for (Object closeIt = ctx.actualNamespace;
                 closeIt != null;
                 closeIt = getNamespaceWithoutModel(closeIt)) {
             sb.append(generateHeaderPackageEndSingle(closeIt));
         }
-        actualNamespace = null;
+        ctx.actualNamespace = null;
         return sb.toString();
     }
 
     /* This generates the file internal header, not the .h file!
      * That is, things before the class declaration.
      */
-    private String generateHeader(Object cls) {
+    private String generateHeader(GenerationContext ctx, Object cls) {
         StringBuffer sb = new StringBuffer(240);
 
-        addUserHeaders(cls, generatorPass == SOURCE_PASS);
+        addUserHeaders(ctx, cls, ctx.generatorPass == SOURCE_PASS);
 
         if (getNamespaceWithoutModel(cls) != null) {
-            String pkgstart = generateHeaderPackageStart(cls);
+            String pkgstart = generateHeaderPackageStart(ctx, cls);
             if (pkgstart.length() > 0) {
                 sb.append(LINE_SEPARATOR);
                 sb.append(pkgstart);
@@ -930,9 +962,9 @@ public class GeneratorCpp implements CodeGenerator {
     /* 
      * This generates all the things that go after the class declaration.
      */
-    private String generateFooter() {
+    private String generateFooter(GenerationContext ctx) {
         StringBuffer sb = new StringBuffer(80);
-        sb.append(generateHeaderPackageEnd());
+        sb.append(generateHeaderPackageEnd(ctx));
         if (sb.length() > 0) {
             sb.insert(0, LINE_SEPARATOR);
         }
@@ -943,11 +975,11 @@ public class GeneratorCpp implements CodeGenerator {
      * separate generation of Operation Prefix from generateOperation
      * so that generateOperation is language independent
      */
-    private String generateOperationPrefix(Object op) {
+    private String generateOperationPrefix(GenerationContext ctx, Object op) {
         StringBuffer sb = new StringBuffer(80);
         // c++ doesn't have any builtin construct for concurrency
         //sb.append(generateConcurrency(op));
-        if (generatorPass != SOURCE_PASS) {
+        if (ctx.generatorPass != SOURCE_PASS) {
             // make all operations to virtual - as long as they are not "leaf"
             if (getFacade().isLeaf(op) && !getFacade().isRoot(op)) {
                 // there's no way to make a leaf method that it's not root in
@@ -990,9 +1022,9 @@ public class GeneratorCpp implements CodeGenerator {
      *
      * @param sb Where to put the result.
      */
-    private void generateOperationNameAndTestForConstructor(Object op,
-            StringBuffer sb) {
-        if (generatorPass == SOURCE_PASS) {
+    private void generateOperationNameAndTestForConstructor(
+            GenerationContext ctx, Object op, StringBuffer sb) {
+        if (ctx.generatorPass == SOURCE_PASS) {
             Object cls = getFacade().getOwner(op);
             String prefix = new String();
             while (!getFacade().isAPackage(cls)) {
@@ -1029,18 +1061,25 @@ public class GeneratorCpp implements CodeGenerator {
      * @return The C++ code for the operation.
      */
     public String generateOperation(Object op, boolean documented) {
+        return generateOperation(new GenerationContext(), op, documented);
+    }
+
+    private String generateOperation(GenerationContext ctx, Object op,
+            boolean documented) {
         // generate nothing for abstract functions, if we generate the
         // source .cpp file at the moment
-        if ((generatorPass == SOURCE_PASS) && (getFacade().isAbstract(op))) {
+        if ((ctx.generatorPass == SOURCE_PASS)
+                && (getFacade().isAbstract(op))) {
             return "";
         }
         StringBuffer sb = new StringBuffer(80);
         StringBuffer nameBuffer = new StringBuffer(20);
-        String operationIndent = (generatorPass == HEADER_PASS) ? indent : "";
-        generateOperationNameAndTestForConstructor(op, nameBuffer);
+        String operationIndent =
+            (ctx.generatorPass == HEADER_PASS) ? indent : "";
+        generateOperationNameAndTestForConstructor(ctx, op, nameBuffer);
 
         // if generating a file always document
-        if (documented || generatorPass != NONE_PASS) {
+        if (documented || ctx.generatorPass != NONE_PASS) {
             // generate DocComment from tagged values
             String tv = generateTaggedValues (op, DOC_COMMENT_TAGS);
             if (tv != null && tv.length() > 0) {
@@ -1049,7 +1088,7 @@ public class GeneratorCpp implements CodeGenerator {
         }
 
         sb.append(operationIndent)
-            .append(generateOperationPrefix(op));
+            .append(generateOperationPrefix(ctx, op));
 
         // pick out return type
         Collection returnParams = getCoreHelper().getReturnParameters(op);
@@ -1074,14 +1113,14 @@ public class GeneratorCpp implements CodeGenerator {
                     sb.append("void ");
                 }
                 else if (returnType != null) {
-                    sb.append(generateNameWithPkgSelection(returnType))
+                    sb.append(generateNameWithPkgSelection(ctx, returnType))
                         .append(' ');
                     /* fixing 2862 - apply modifiers, 
                      * i.e. pointer or reference TV */
-                    sb.append(generateAttributeParameterModifier(rp));
+                    sb.append(generateAttributeParameterModifier(ctx, rp));
                 }
-                boolean predecl = !checkIncludeNeeded4Element(rp);
-                addDependency(returnType, predecl);
+                boolean predecl = !checkIncludeNeeded4Element(ctx, rp);
+                addDependency(ctx, returnType, predecl);
             }
         }
 
@@ -1100,7 +1139,7 @@ public class GeneratorCpp implements CodeGenerator {
 
                 if (!first) sb.append(", ");
 
-                sb.append(generateParameter(p));
+                sb.append(generateParameter(ctx, p));
                 first = false;
             }
         }
@@ -1122,7 +1161,7 @@ public class GeneratorCpp implements CodeGenerator {
      * @return one of NORMAL_MOD, REFERENCE_MOD, POINTER_MOD, or -1 if
      *         no specific tag is found
      */
-    private int getAttributeModifierType(Object elem) {
+    private int getAttributeModifierType(GenerationContext ctx, Object elem) {
         // first check whether the parameter shall be a pointer of reference
         Iterator iter = getFacade().getTaggedValues(elem);
         while (iter.hasNext()) {
@@ -1139,13 +1178,16 @@ public class GeneratorCpp implements CodeGenerator {
                 }
             }
         }
+        if (ctx.pointerEnds.contains(elem)) {
+            return POINTER_MOD;
+        }
         return -1; /* no tag found */
     }
 
 
-    private String generateAttributeParameterModifier(Object attr,
-                                                      String def) {
-        int modType = getAttributeModifierType(attr);
+    private String generateAttributeParameterModifier(GenerationContext ctx,
+            Object attr, String def) {
+        int modType = getAttributeModifierType(ctx, attr);
 
         // if attr has an abstract type it must be pointer or reference
         if (modType == NORMAL_MOD || modType == -1) {
@@ -1217,16 +1259,22 @@ public class GeneratorCpp implements CodeGenerator {
     	return null;
     }
 
-    private String generateAttributeParameterModifier(Object attr) {
-        return generateAttributeParameterModifier(attr, "");
+    private String generateAttributeParameterModifier(GenerationContext ctx,
+            Object attr) {
+        return generateAttributeParameterModifier(ctx, attr, "");
     }
 
 
     public String generateAttribute(Object attr, boolean documented) {
+        return generateAttribute(new GenerationContext(), attr, documented);
+    }
+
+    private String generateAttribute(GenerationContext ctx, Object attr,
+            boolean documented) {
         StringBuffer sb = new StringBuffer(80);
 
         // list tagged values for documentation
-        if (documented || generatorPass != NONE_PASS) {
+        if (documented || ctx.generatorPass != NONE_PASS) {
             String tv = generateTaggedValues (attr, DOC_COMMENT_TAGS);
             if (tv != null && tv.length() > 0) {
                 sb.append (LINE_SEPARATOR).append(indent).append(tv).
@@ -1238,41 +1286,41 @@ public class GeneratorCpp implements CodeGenerator {
         sb.append(generateScope(attr));
         sb.append(generateStructuralFeatureChangeability(attr));
         sb.append(
-                generateMultiplicity(attr, getFacade().getName(attr), 
+                generateMultiplicity(ctx, attr, getFacade().getName(attr), 
                         getFacade().getMultiplicity(attr),
-                        generateAttributeParameterModifier(attr)));
+                        generateAttributeParameterModifier(ctx, attr)));
         sb.append(";");
-        if (generatorPass != NONE_PASS)
+        if (ctx.generatorPass != NONE_PASS)
             sb.append(LINE_SEPARATOR);
 
         // add the type of the attribute in the dependency list
-        boolean predecl = !checkIncludeNeeded4Element(attr);
-        addDependency(getFacade().getType(attr), predecl);
+        boolean predecl = !checkIncludeNeeded4Element(ctx, attr);
+        addDependency(ctx, getFacade().getType(attr), predecl);
 
         return sb.toString();
     }
 
 
-    private String generateParameter(Object param) {
+    private String generateParameter(GenerationContext ctx, Object param) {
         StringBuffer sb = new StringBuffer(20);
         //TODO: qualifiers (e.g., const)
         // generate const for references or pointers which are
         // defined as IN - other qualifiers are not important for
         // C++ parameters
         Object type = getFacade().getType(param);
-        sb.append(generateParameterChangeability(param));
+        sb.append(generateParameterChangeability(ctx, param));
         //TODO: stereotypes...
         String constModifier = generateConstAttributeParameterModifier(param); 
         if (constModifier != null) {
             sb.append(constModifier).append(' ');
         }
-        sb.append(generateNameWithPkgSelection(type));
+        sb.append(generateNameWithPkgSelection(ctx, type));
         sb.append(' ');
-        sb.append(generateAttributeParameterModifier(param));
+        sb.append(generateAttributeParameterModifier(ctx, param));
         sb.append(getFacade().getName(param));
 
         // insert default value, if we are generating the header or notation
-        if (generatorPass != SOURCE_PASS) {
+        if (ctx.generatorPass != SOURCE_PASS) {
             Object defvalObj = getFacade().getDefaultValue(param);
             if (defvalObj != null) {
                 String defval =
@@ -1284,8 +1332,8 @@ public class GeneratorCpp implements CodeGenerator {
         }
 
         // add the type of the parameter in the dependency list
-        boolean predecl = !checkIncludeNeeded4Element(param);
-        addDependency(type, predecl);
+        boolean predecl = !checkIncludeNeeded4Element(ctx, param);
+        addDependency(ctx, type, predecl);
 
         return sb.toString();
     }
@@ -1302,7 +1350,8 @@ public class GeneratorCpp implements CodeGenerator {
      *
      * @return the generated start sequence
      */
-    StringBuffer generateClassifierStart(Object cls) {
+    private StringBuffer generateClassifierStart(GenerationContext ctx,
+            Object cls) {
         StringBuffer sb = new StringBuffer (80);
         // Add the comments for this classifier first.
         sb.append(LINE_SEPARATOR)
@@ -1314,12 +1363,12 @@ public class GeneratorCpp implements CodeGenerator {
             sb.append (LINE_SEPARATOR).append (indent).append (tv);
         }
         
-        sb.append(generateClassifierNameAndAncestors(cls));
+        sb.append(generateClassifierNameAndAncestors(ctx, cls));
 
         // add opening brace
         if (lfBeforeCurly) {
             sb.append(LINE_SEPARATOR).append('{');
-        } else if (generatorPass != SOURCE_PASS) {
+        } else if (ctx.generatorPass != SOURCE_PASS) {
             sb.append(" {");
         }
 
@@ -1342,10 +1391,15 @@ public class GeneratorCpp implements CodeGenerator {
      * @return the generated name and ancestors
      */
     public StringBuffer generateClassifierNameAndAncestors(Object cls) {
+        return generateClassifierNameAndAncestors(new GenerationContext(), cls);
+    }
+
+    private StringBuffer generateClassifierNameAndAncestors(
+            GenerationContext ctx, Object cls) {
         StringBuffer sb = new StringBuffer (80);
 
         // don't create class-Start for implementation in .cpp
-        if (generatorPass == SOURCE_PASS) return sb;
+        if (ctx.generatorPass == SOURCE_PASS) return sb;
 
         String sClassifierKeyword;
         if (getFacade().isAClass(cls) || getFacade().isAInterface(cls)) {
@@ -1361,7 +1415,7 @@ public class GeneratorCpp implements CodeGenerator {
 
         // add base class/interface
         String baseClass =
-            generateGeneralization(getFacade().getGeneralizations(cls));
+            generateGeneralization(ctx, getFacade().getGeneralizations(cls));
         if (!baseClass.equals ("")) {
             sb.append (" : ")
                 .append (baseClass);
@@ -1370,7 +1424,7 @@ public class GeneratorCpp implements CodeGenerator {
 
         // add implemented interfaces, if needed (uml: realizations)
         if (getFacade().isAClass(cls)) {
-            String interfaces = generateSpecification(cls);
+            String interfaces = generateSpecification(ctx, cls);
             if (!interfaces.equals ("")) {
                 if (!hasBaseClass) sb.append (" : ");
                 else sb.append (", ");
@@ -1380,10 +1434,11 @@ public class GeneratorCpp implements CodeGenerator {
         return sb;
     }
 
-    private StringBuffer generateClassifierEnd(Object cls) {
+    private StringBuffer generateClassifierEnd(GenerationContext ctx,
+            Object cls) {
         StringBuffer sb = new StringBuffer();
         if (getFacade().isAClass(cls) || getFacade().isAInterface(cls)) {
-            if ((verboseDocs) && (generatorPass != SOURCE_PASS)) {
+            if ((verboseDocs) && (ctx.generatorPass != SOURCE_PASS)) {
                 String classifierkeyword = null;
                 if (getFacade().isAClass(cls)) {
                     classifierkeyword = "class";
@@ -1396,7 +1451,7 @@ public class GeneratorCpp implements CodeGenerator {
                             .append(" ").append(getFacade().getName(cls))
                                 .append(LINE_SEPARATOR);
             }
-            if (generatorPass != SOURCE_PASS)
+            if (ctx.generatorPass != SOURCE_PASS)
                 sb.append("};").append(LINE_SEPARATOR);
         }
         return sb;
@@ -1408,12 +1463,13 @@ public class GeneratorCpp implements CodeGenerator {
      * @param parts the parts to output
      * @return the composed parts
      */
-    private String generateAllParts(StringBuffer[] parts) {
+    private String generateAllParts(GenerationContext ctx,
+            StringBuffer[] parts) {
         StringBuffer sb = new StringBuffer();
         // generate all parts in order: public, protected, private
         for (int i = 0; i < ALL_PARTS.length; i++) {
             if (parts[i].toString().trim().length() > 0) {
-                if (generatorPass != SOURCE_PASS) {
+                if (ctx.generatorPass != SOURCE_PASS) {
                     if (i != 0) sb.append(LINE_SEPARATOR);
                     sb.append(' ').append(PART_NAME[i]).append(':');
                     sb.append(LINE_SEPARATOR);
@@ -1463,9 +1519,13 @@ public class GeneratorCpp implements CodeGenerator {
      * at the moment.
      */
     public String generateClassifier(Object cls) {
+        return generateClassifier(new GenerationContext(), cls);
+    }
+
+    private String generateClassifier(GenerationContext ctx, Object cls) {
         // If we're in the notation pane, do a special trick
         // to show both header and source
-        if (generatorPass == NONE_PASS && (getFacade().isAClass(cls) 
+        if (ctx.generatorPass == NONE_PASS && (getFacade().isAClass(cls) 
                 || getFacade().isAInterface(cls))) {
             // for inner classes, show source of top level class
             // TODO: don't know if this is the best thing to do
@@ -1487,12 +1547,12 @@ public class GeneratorCpp implements CodeGenerator {
         }
         
         StringBuffer returnValue = new StringBuffer();
-        StringBuffer start = generateClassifierStart(cls);
+        StringBuffer start = generateClassifierStart(ctx, cls);
         if (((start != null) && (start.length() > 0))
-            || (generatorPass == SOURCE_PASS)) {
-            StringBuffer typedefs = generateGlobalTypedefs(cls);
-            StringBuffer body = generateClassifierBody(cls);
-            StringBuffer end = generateClassifierEnd(cls);
+            || (ctx.generatorPass == SOURCE_PASS)) {
+            StringBuffer typedefs = generateGlobalTypedefs(ctx, cls);
+            StringBuffer body = generateClassifierBody(ctx, cls);
+            StringBuffer end = generateClassifierEnd(ctx, cls);
             returnValue.append((typedefs != null) ? typedefs.toString() : "");
             returnValue.append(start);
             if ((body != null) && (body.length() > 0)) {
@@ -1510,11 +1570,12 @@ public class GeneratorCpp implements CodeGenerator {
     /** 2002-12-12 Achim Spangler
      * generate global typedefs
      */
-    private StringBuffer generateGlobalTypedefs(Object cls) {
+    private StringBuffer generateGlobalTypedefs(GenerationContext ctx,
+            Object cls) {
         StringBuffer sb = new StringBuffer();
         if (getFacade().isAClass(cls) || getFacade().isAInstance(cls)) {
             // add typedefs
-            if (generatorPass == HEADER_PASS) {
+            if (ctx.generatorPass == HEADER_PASS) {
                 Collection globalTypedefStatements =
                     findTagValues(cls, "typedef_global_header");
                 if (!globalTypedefStatements.isEmpty()) {
@@ -1559,10 +1620,10 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls
      * @param sb Where to put the result.
      */
-    private void generateClassifierBodyAttributes(Object cls,
-            StringBuffer sb) {
+    private void generateClassifierBodyAttributes(GenerationContext ctx,
+            Object cls, StringBuffer sb) {
         Collection attrs = getFacade().getAttributes(cls);
-        if (attrs.isEmpty() || (generatorPass != HEADER_PASS)) {
+        if (attrs.isEmpty() || (ctx.generatorPass != HEADER_PASS)) {
             return;
         }
         String tv = null; // helper for tagged values
@@ -1581,14 +1642,14 @@ public class GeneratorCpp implements CodeGenerator {
             Object attr = attrIter.next();
             int i = getVisibilityPart(attr);
 
-            part[i].append(indent).append(generateAttribute(attr, false));
+            part[i].append(indent).append(generateAttribute(ctx, attr, false));
 
             tv = generateTaggedValues(attr, ALL_BUT_DOC_TAGS);
             if (tv != null && tv.length() > 0) {
                 part[i].append(indent).append(tv);
             }
         }
-        sb.append(generateAllParts(part));
+        sb.append(generateAllParts(ctx, part));
     }
 
     /**
@@ -1596,10 +1657,10 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls The classifier to generate.
      * @param sb Where to put the result.
      */
-    private void generateClassifierBodyAssociations(Object cls,
-            StringBuffer sb) {
+    private void generateClassifierBodyAssociations(GenerationContext ctx,
+            Object cls, StringBuffer sb) {
 
-        if (generatorPass == SOURCE_PASS)
+        if (ctx.generatorPass == SOURCE_PASS)
             return;
 
         Collection ends = getFacade().getAssociationEnds(cls);
@@ -1620,15 +1681,15 @@ public class GeneratorCpp implements CodeGenerator {
                 Object ae = endEnum.next();
                 Object a = getFacade().getAssociation(ae);
                 AssociationEndHandler aeHandler = new AssociationEndHandler(
-                        ae);
+                        ae, ctx.pointerEnds);
                 try {
                     aeHandler.pre();
-                    generateAssociationFrom(a, ae, part);
+                    generateAssociationFrom(ctx, a, ae, part);
                 } finally {
                     aeHandler.post();
                 }
             }
-            sb.append(generateAllParts(part));
+            sb.append(generateAllParts(ctx, part));
         }
         // if this is an association class, generate attributes for
         // all the AssociationEnds
@@ -1661,13 +1722,14 @@ public class GeneratorCpp implements CodeGenerator {
                     name = "my" + generateClassifierRef(type);
                 }
 
-                sb.append(generateNameWithPkgSelection(type));
-                sb.append(generateAttributeParameterModifier(ae));
+                sb.append(generateNameWithPkgSelection(ctx, type));
+                sb.append(generateAttributeParameterModifier(ctx, ae));
                 sb.append(" ").append(name);
                 sb.append(";").append(LINE_SEPARATOR);
 
                 // add the type of the association end in the dependency list
-                addDependency(type, !checkIncludeNeeded4Element(type));
+                addDependency(ctx, type,
+                        !checkIncludeNeeded4Element(ctx, type));
 
                 String tv = generateTaggedValues(ae, ALL_BUT_DOC_TAGS);
                 if (tv != null && tv.length() > 0) {
@@ -1684,17 +1746,18 @@ public class GeneratorCpp implements CodeGenerator {
      * as inline in header file
      * @return true -> generate body in actual path
      */
-    private boolean checkGenerateOperationBody(Object op) {
-        boolean result = !((generatorPass == HEADER_PASS)
+    private boolean checkGenerateOperationBody(GenerationContext ctx,
+            Object op) {
+        boolean result = !((ctx.generatorPass == HEADER_PASS)
             || (getFacade().isAbstract(op))
                 || (getFacade().isAInterface(getFacade().getOwner(op))));
 
         // if this operation has Tag "inline" the method shall be
         // generated in header
         Inline inlineStyle = Inline.getInlineOperationModifierType(op);
-        if (generatorPass == HEADER_PASS) {
+        if (ctx.generatorPass == HEADER_PASS) {
             result = inlineStyle.isMethodBodyInsideClass();
-        } else if (generatorPass == NONE_PASS) {
+        } else if (ctx.generatorPass == NONE_PASS) {
             result = inlineStyle.isMethodBodyOutsideClass();
         }
         
@@ -1704,7 +1767,8 @@ public class GeneratorCpp implements CodeGenerator {
     /** 2002-12-13 Achim Spangler
      * generate a single set function for a given attribute and StringBuffer
      */
-    private void generateSingleAttributeSet(Object attr, StringBuffer sb) {
+    private void generateSingleAttributeSet(GenerationContext ctx, Object attr,
+            StringBuffer sb) {
         if (getFacade().getType(attr) == null) {
             return;
         }
@@ -1723,7 +1787,7 @@ public class GeneratorCpp implements CodeGenerator {
         sb.append(indent);
         sb.append("void set_").append(getFacade().getName(attr))
             .append("( ");
-        String modifier = generateAttributeParameterModifier(attr);
+        String modifier = generateAttributeParameterModifier(ctx, attr);
         if (modifier != null && modifier.length() > 0) {
             // generate: "const <type> <modifier>value"
             if (modifier.equals("&")) sb.append("const ");
@@ -1747,7 +1811,8 @@ public class GeneratorCpp implements CodeGenerator {
     /** 2002-12-13 Achim Spangler
      * generate a single get function for a given attribute and StringBuffer
      */
-    private void generateSingleAttributeGet(Object attr, StringBuffer sb) {
+    private void generateSingleAttributeGet(GenerationContext ctx, Object attr,
+            StringBuffer sb) {
         if (getFacade().getType(attr) == null) return;
         // generate for attributes with class-type:
         // "const <type>& get_<name>( void ) { return <name>; };"
@@ -1758,7 +1823,7 @@ public class GeneratorCpp implements CodeGenerator {
         sb.append("/** simple access function to get the attribute ");
         sb.append(getFacade().getName(attr));
         sb.append(" by function */").append(LINE_SEPARATOR).append(indent);
-        String modifier = generateAttributeParameterModifier(attr);
+        String modifier = generateAttributeParameterModifier(ctx, attr);
         if (modifier != null && modifier.length() > 0) {
             // generate: "const <type><modifier>"
             sb.append("const ");
@@ -1785,12 +1850,10 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls
      */
     private void generateClassifierBodyTaggedAccess4Attributes(
-            Object cls,
-            StringBuffer funcPrivate,
-            StringBuffer funcProtected,
-            StringBuffer funcPublic) {
+            GenerationContext ctx, Object cls, StringBuffer funcPrivate,
+            StringBuffer funcProtected, StringBuffer funcPublic) {
         Collection strs = getFacade().getAttributes(cls);
-        if (strs.isEmpty() || (generatorPass != HEADER_PASS)) {
+        if (strs.isEmpty() || (ctx.generatorPass != HEADER_PASS)) {
             return;
         }
         String accessTag = null;
@@ -1802,13 +1865,13 @@ public class GeneratorCpp implements CodeGenerator {
                     TV_NAME_SET);
             if (accessTag != null && accessTag.length() > 0) {
                 if (accessTag.indexOf("public") != -1) {
-                    generateSingleAttributeSet(attr, funcPublic);
+                    generateSingleAttributeSet(ctx, attr, funcPublic);
                 }
                 if (accessTag.indexOf("protected") != -1) {
-                    generateSingleAttributeSet(attr, funcProtected);
+                    generateSingleAttributeSet(ctx, attr, funcProtected);
                 }
                 if (accessTag.indexOf("private") != -1) {
-                    generateSingleAttributeSet(attr, funcPrivate);
+                    generateSingleAttributeSet(ctx, attr, funcPrivate);
                 }
             }
 
@@ -1816,13 +1879,13 @@ public class GeneratorCpp implements CodeGenerator {
                     TV_NAME_GET);
             if (accessTag != null && accessTag.length() > 0) {
                 if (accessTag.indexOf("public") != -1) {
-                    generateSingleAttributeGet(attr, funcPublic);
+                    generateSingleAttributeGet(ctx, attr, funcPublic);
                 }
                 if (accessTag.indexOf("protected") != -1) {
-                    generateSingleAttributeGet(attr, funcProtected);
+                    generateSingleAttributeGet(ctx, attr, funcProtected);
                 }
                 if (accessTag.indexOf("private") != -1) {
-                    generateSingleAttributeGet(attr, funcPrivate);
+                    generateSingleAttributeGet(ctx, attr, funcPrivate);
                 }
             }
         }
@@ -1833,8 +1896,8 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls
      * @param sb Where to put the result.
      */
-    private void generateClassifierBodyOperations(Object cls,
-            StringBuffer sb) {
+    private void generateClassifierBodyOperations(GenerationContext ctx,
+            Object cls, StringBuffer sb) {
         Collection behs = getFacade().getOperations(cls);
         if (behs.isEmpty()) return;
         sb.append(LINE_SEPARATOR);
@@ -1847,7 +1910,8 @@ public class GeneratorCpp implements CodeGenerator {
         funcs[0] = new StringBuffer(80);
         funcs[1] = new StringBuffer(80);
         funcs[2] = new StringBuffer(80);
-        generateClassifierBodyTaggedAccess4Attributes(cls, funcs[PRIVATE_PART],
+        generateClassifierBodyTaggedAccess4Attributes(ctx, cls,
+                                                      funcs[PRIVATE_PART],
                                                       funcs[PROTECTED_PART],
                                                       funcs[PUBLIC_PART]);
 
@@ -1860,10 +1924,11 @@ public class GeneratorCpp implements CodeGenerator {
             if (p < 0) continue;
             tb = funcs[p];
 
-            boolean mustGenBody = checkGenerateOperationBody(bf);
-            if (tb != null && ((generatorPass == HEADER_PASS) || mustGenBody)) {
+            boolean mustGenBody = checkGenerateOperationBody(ctx, bf);
+            if (tb != null
+                    && ((ctx.generatorPass == HEADER_PASS) || mustGenBody)) {
                 tb.append(LINE_SEPARATOR);
-                tb.append(generateOperation(bf, false));
+                tb.append(generateOperation(ctx, bf, false));
                 
                 // helper for tagged values
                 String tv = generateTaggedValues(bf, ALL_BUT_DOC_TAGS);
@@ -1872,7 +1937,8 @@ public class GeneratorCpp implements CodeGenerator {
                         && (getFacade().isAOperation(bf))
                         && (!getFacade().isAbstract(bf))) {
                     // there is no ReturnType in behavioral feature (uml)
-                    tb.append(LINE_SEPARATOR).append(generateMethodBody(bf));
+                    tb.append(LINE_SEPARATOR)
+                        .append(generateMethodBody(ctx, bf));
                 } else {
                     tb.append(";").append(LINE_SEPARATOR);
                     if (tv.length() > 0) {
@@ -1882,7 +1948,7 @@ public class GeneratorCpp implements CodeGenerator {
             }
         } // end loop through all operations
 
-        sb.append(generateAllParts(funcs));
+        sb.append(generateAllParts(ctx, funcs));
     }
 
     /**
@@ -1890,8 +1956,9 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls
      * @param sb Where to put the result.
      */
-    private void generateClassifierBodyTypedefs(Object cls, StringBuffer sb) {
-        if (generatorPass == HEADER_PASS) {
+    private void generateClassifierBodyTypedefs(GenerationContext ctx,
+            Object cls, StringBuffer sb) {
+        if (ctx.generatorPass == HEADER_PASS) {
             Collection publicTypedefStatements =
                 findTagValues(cls, TV_NAME_TYPEDEF_PUBLIC);
             Collection protectedTypedefStatements =
@@ -1954,9 +2021,10 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls the classifier object
      * @param sb the buffer to where the generate code goes
      */
-    private void generateClassifierDestructor(Object cls, StringBuffer sb) {
+    private void generateClassifierDestructor(GenerationContext ctx, Object cls,
+            StringBuffer sb) {
         if (getFacade().isAInterface(cls) 
-                && generatorPass == HEADER_PASS) {
+                && ctx.generatorPass == HEADER_PASS) {
             sb.append(LINE_SEPARATOR).append("public:").append(LINE_SEPARATOR);
             sb.append(indent).append("// virtual destructor for interface ")
                 .append(LINE_SEPARATOR);
@@ -1966,7 +2034,8 @@ public class GeneratorCpp implements CodeGenerator {
         }
     }
 
-    private void generateClassifierInnerClasses(Object cls, StringBuffer sb) {
+    private void generateClassifierInnerClasses(GenerationContext ctx,
+            Object cls, StringBuffer sb) {
         StringBuffer part[] = new StringBuffer[ALL_PARTS.length];
         for (int i = 0; i < part.length; i++)
             part[i] = new StringBuffer(80);
@@ -1976,10 +2045,10 @@ public class GeneratorCpp implements CodeGenerator {
             Object inner = it.next();
             if (getFacade().isAClass(inner)
                 || getFacade().isAInterface(inner)) {
-                String innerCode = generateClassifier(inner);
+                String innerCode = generateClassifier(ctx, inner);
                 int p = getVisibilityPart(inner);
                 part[p].append(LINE_SEPARATOR);
-                if (generatorPass == HEADER_PASS) {
+                if (ctx.generatorPass == HEADER_PASS) {
                     part[p].append(indentString(innerCode, 1));
                 } else {
                     part[p].append(innerCode);
@@ -1987,7 +2056,7 @@ public class GeneratorCpp implements CodeGenerator {
                 part[p].append(LINE_SEPARATOR);
             }
         }
-        sb.append(generateAllParts(part));
+        sb.append(generateAllParts(ctx, part));
     }
 
     /**
@@ -1995,28 +2064,29 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls
      * @return a StringBuffer with the result.
      */
-    private StringBuffer generateClassifierBody(Object cls) {
+    private StringBuffer generateClassifierBody(GenerationContext ctx,
+            Object cls) {
         StringBuffer sb = new StringBuffer();
         if (getFacade().isAClass(cls) || getFacade().isAInterface(cls))
         { 
             // Inner classes
-            generateClassifierInnerClasses(cls, sb);
+            generateClassifierInnerClasses(ctx, cls, sb);
 
             // add operations
             // TODO: constructors
-            generateClassifierBodyOperations(cls, sb);
+            generateClassifierBodyOperations(ctx, cls, sb);
 
             // fixing issue #2587
-            generateClassifierDestructor(cls, sb);
+            generateClassifierDestructor(ctx, cls, sb);
 
             // add attributes
-            generateClassifierBodyAttributes(cls, sb);
+            generateClassifierBodyAttributes(ctx, cls, sb);
 
             // add attributes implementing associations
-            generateClassifierBodyAssociations(cls, sb);
+            generateClassifierBodyAssociations(ctx, cls, sb);
 
             // add typedefs
-            generateClassifierBodyTypedefs(cls, sb);
+            generateClassifierBodyTypedefs(ctx, cls, sb);
         }
         return sb;
     }
@@ -2028,7 +2098,7 @@ public class GeneratorCpp implements CodeGenerator {
      * If no method is associated with the operation, a default method
      * body will be generated.
      */
-    private String generateMethodBody(Object op) {
+    private String generateMethodBody(GenerationContext ctx, Object op) {
         if (op != null) {
             StringBuffer sb = new StringBuffer(80);
             Collection methods = getFacade().getMethods(op);
@@ -2037,7 +2107,7 @@ public class GeneratorCpp implements CodeGenerator {
             boolean methodFound = false;
             String tv = generateTaggedValues(op, ALL_BUT_DOC_TAGS);
             String operationIndent =
-                (generatorPass == HEADER_PASS) ? indent : "";
+                (ctx.generatorPass == HEADER_PASS) ? indent : "";
 
             // append tags which are not Doc-Comments
             if (tv.length() > 0) {
@@ -2346,8 +2416,8 @@ public class GeneratorCpp implements CodeGenerator {
      * @param parts the buffers associated with the public, protected
      *        and private parts, where the code is to be written.
      */
-    private void generateAssociationFrom(Object a, Object ae,
-            StringBuffer[] parts) {
+    private void generateAssociationFrom(GenerationContext ctx, Object a,
+            Object ae, StringBuffer[] parts) {
         // TODO: does not handle n-ary associations
 
         Collection connections = getFacade().getConnections(a);
@@ -2359,7 +2429,7 @@ public class GeneratorCpp implements CodeGenerator {
                 if (p >= 0) {
                     StringBuffer sb = parts[p];
                     sb.append(LINE_SEPARATOR);
-                    String assend = generateAssociationEnd(ae2);
+                    String assend = generateAssociationEnd(ctx, ae2);
                     if (assend.length() > 0) {
                         String comment =
                             generateConstraintEnrichedDocComment(a, ae2);
@@ -2378,7 +2448,7 @@ public class GeneratorCpp implements CodeGenerator {
         }
     }
 
-    private String generateAssociationEnd(Object ae) {
+    private String generateAssociationEnd(GenerationContext ctx, Object ae) {
         if (!getFacade().isNavigable(ae)) {
             return "";
         }
@@ -2411,17 +2481,17 @@ public class GeneratorCpp implements CodeGenerator {
             // between us and the association class itself.
             // Usually, this is a pointer or a reference, so default
             // to a pointer.
-            modifier = generateAttributeParameterModifier(asc, "*");
+            modifier = generateAttributeParameterModifier(ctx, asc, "*");
             // add the association class in the dependency list
-            addDependency(asc, !checkIncludeNeeded4Element(ae)); 
+            addDependency(ctx, asc, !checkIncludeNeeded4Element(ctx, ae)); 
         } else {
-            modifier = generateAttributeParameterModifier(ae);
+            modifier = generateAttributeParameterModifier(ctx, ae);
             // add the type of the association end in the dependency list
-            boolean predecl = !checkIncludeNeeded4Element(ae);
-            addDependency(getFacade().getType(ae), predecl);
+            boolean predecl = !checkIncludeNeeded4Element(ctx, ae);
+            addDependency(ctx, getFacade().getType(ae), predecl);
         }
         
-        sb.append(generateMultiplicity(ae, name,
+        sb.append(generateMultiplicity(ctx, ae, name,
                              getFacade().getMultiplicity(ae),
                              modifier));
 
@@ -2429,7 +2499,8 @@ public class GeneratorCpp implements CodeGenerator {
     }
 
 
-    private String generateGeneralization(Collection generalizations) {
+    private String generateGeneralization(GenerationContext ctx,
+            Collection generalizations) {
         if (generalizations == null) {
             return "";
         }
@@ -2452,15 +2523,15 @@ public class GeneratorCpp implements CodeGenerator {
                         sb.append("public ");
                     }
                 }
-                sb.append(generateNameWithPkgSelection(ge));
+                sb.append(generateNameWithPkgSelection(ctx, ge));
                 // add the type of the base class in the dependency list
-                addDependency(ge, false);
+                addDependency(ctx, ge, false);
             }
         }
         return sb.toString();
     }
 
-    private String generateSpecification(Object cls) {
+    private String generateSpecification(GenerationContext ctx, Object cls) {
         Collection deps = getFacade().getClientDependencies(cls);
         Iterator depIterator = deps.iterator();
         StringBuffer sb = new StringBuffer(80);
@@ -2480,9 +2551,9 @@ public class GeneratorCpp implements CodeGenerator {
                 } else {
                     sb.append("virtual public ");
                 }
-                sb.append(generateNameWithPkgSelection(iFace));
+                sb.append(generateNameWithPkgSelection(ctx, iFace));
                 // add the type of the interface in the dependency list
-                addDependency(iFace, false);
+                addDependency(ctx, iFace, false);
             }
         }
         return sb.toString();
@@ -2575,8 +2646,9 @@ public class GeneratorCpp implements CodeGenerator {
     /**
      * Generate "const" keyword for const pointer/reference parameters.
      */
-    private String generateParameterChangeability(Object par) {
-        int parType = getAttributeModifierType(par);
+    private String generateParameterChangeability(GenerationContext ctx,
+            Object par) {
+        int parType = getAttributeModifierType(ctx, par);
         if (parType != -1 && parType != NORMAL_MOD 
                 && getFacade().getKind(par) != null 
                 && (getFacade().getKind(par)).equals(
@@ -2593,8 +2665,8 @@ public class GeneratorCpp implements CodeGenerator {
         return "";
     }
 
-    private String generateMultiplicity(Object item, String name,
-            Object m, String modifier) {
+    private String generateMultiplicity(GenerationContext ctx, Object item,
+            String name, Object m, String modifier) {
         String type = null;
         String containerType = null;
         Object typeCls = null;
@@ -2614,7 +2686,7 @@ public class GeneratorCpp implements CodeGenerator {
             type = "";
         }
         if (typeCls != null) {
-            type = generateNameWithPkgSelection(typeCls);
+            type = generateNameWithPkgSelection(ctx, typeCls);
         }
         if (m == null) {
             return (type + " " + modifier + name);
@@ -2655,8 +2727,8 @@ public class GeneratorCpp implements CodeGenerator {
                 } else if (multType.equals("stack")) {
                     containerType = "stack";
                 } else if (multType.equals("stringmap")) {
-                    systemInc.add("string");
-                    systemInc.add("map");
+                    ctx.systemInc.add("string");
+                    ctx.systemInc.add("map");
                     sb.append(stdPrefix + "map<" + stdPrefix + "string, ");
                     if (modifier.indexOf('&') != -1) {
                         LOG.warning("cannot generate STL container "
@@ -2676,7 +2748,7 @@ public class GeneratorCpp implements CodeGenerator {
 
             if (containerType != null) {
                 // these container are declared the same except the name
-                systemInc.add(containerType);
+                ctx.systemInc.add(containerType);
                 sb.append(stdPrefix).append(containerType).append("< ");
                 if (modifier.indexOf('&') != -1) {
                     LOG.warning("cannot generate STL container "
@@ -2714,6 +2786,7 @@ public class GeneratorCpp implements CodeGenerator {
         int defaultInlineStyle = Configuration.getInteger(
                 KEY_CPP_DEFAULT_INLINE, Inline.getDefaultDefaultStyle());
         Inline.setDefaultStyle(defaultInlineStyle);
+        threads = Math.max(1, Configuration.getInteger(KEY_CPP_THREADS, 1));
     }
 
     // Methods used by Settings dialog
@@ -2834,190 +2907,430 @@ public class GeneratorCpp implements CodeGenerator {
         Inline.setDefaultStyle(inline);
         Configuration.setInteger(KEY_CPP_DEFAULT_INLINE, inline);
     }
-    
-    /*
-     * Set of already-generated classifiers.
-     */
-    private Set generatedFiles = null;
-    /*
-     * Number of calls to startGenerateFile non closed.
+
+    /**
+     * @return The number of threads which generate the files.
+     * @see #setThreads(int)
      */
-    private int generateRecur = 0;
+    public int getThreads() {
+        return threads;
+    }
 
-    /* implementation of CodeGenerator */
-    
-    /*
-     *  Start generating files. Needed to track dependencies.
+    /**
+     * Sets the number of threads which generate the text of the files of
+     * different classifiers at the same time. The files are still written in
+     * the order of the elements, so the result is the same as with 1 - the
+     * default - which generates them sequentially in the calling thread.
+     * @param nThreads The number of threads, at least 1.
      */
-    private void startFileGeneration() {
-        if (generateRecur++ == 0) {
-            generatedFiles = new HashSet();
+    public void setThreads(int nThreads) {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException(
+                "The number of threads must be at least 1: " + nThreads);
         }
+        this.threads = nThreads;
+        Configuration.setInteger(KEY_CPP_THREADS, nThreads);
     }
     
-    /*
-     * End generating files. Needed to track dependencies.
+    /* implementation of CodeGenerator */
+    
+    /**
+     * The text of the header and source files of a classifier, generated
+     * before they're written.
      */
-    private void endFileGeneration() {
-        if (--generateRecur == 0) {
-            generatedFiles = null;
+    private static class ClassifierFiles {
+
+        /**
+         * The pathnames of the header and of the source file.
+         */
+        private final String[] pathnames = new String[2];
+
+        /**
+         * The texts of the header and of the source file, null for a file
+         * which isn't generated, such as the source file of an interface.
+         */
+        private final String[] texts = new String[2];
+
+        /**
+         * The templates of the top of the files, null where there is none.
+         */
+        private final FileTemplate[] templates = new FileTemplate[2];
+
+        /**
+         * The values of the placeholders of the templates.
+         */
+        private final String[][] templateValues = new String[2][];
+
+        /**
+         * The classifiers which the files include or predeclare.
+         */
+        private final Set dependencies = new LinkedHashSet();
+    }
+
+    /**
+     * Generate the text of the files of a classifier in a context of its
+     * own. The model isn't changed, nor are the files written, so that the
+     * files of several classifiers may be generated at the same time.
+     *
+     * @param o the classifier, which isn't an inner class
+     * @param path the directory in which the files are generated
+     * @param date the date of the generation, for the templates
+     * @param year the year of the generation, for the templates
+     * @return the text of the files
+     */
+    private ClassifierFiles generateClassifierFiles(Object o, String path,
+            String date, String year) {
+        GenerationContext ctx = new GenerationContext();
+        ClassifierFiles files = new ClassifierFiles();
+        for (ctx.generatorPass = HEADER_PASS;
+             ctx.generatorPass <= SOURCE_PASS;
+             ctx.generatorPass++) {
+            int i = ctx.generatorPass - HEADER_PASS;
+            files.pathnames[i] = createDirectoriesPathname(ctx, o, path);
+            String fileContent =
+                generateFileAsString(ctx, o, files.pathnames[i]);
+            files.dependencies.addAll(ctx.includeCls);
+            files.dependencies.addAll(ctx.predeclCls);
+            if (fileContent.length() == 0) continue;
+            files.templates[i] = getTemplate(ctx, o, path);
+            files.templateValues[i] = getTemplateValues(ctx, o, date, year);
+            String top = files.templates[i] == null ? ""
+                : files.templates[i].apply(files.templateValues[i]);
+            files.texts[i] = top + fileContent + LINE_SEPARATOR;
         }
+        return files;
     }
-    
-    /*
-     * Generate files for element 'o' (and dependencies, eventually).
-     * Return the collection of files (as Strings).
-     * Do nothing (and return an empty collection) it 'o' is in generatedFiles.
+
+    /**
+     * The generation of the files of some classifiers. The text of the files
+     * may be generated by a pool of worker threads, ahead of the calling
+     * thread, which writes the files one classifier after the other, in the
+     * order of a sequential generation, so that the files and the returned
+     * pathnames are the same.
      */
-    private Collection generateFilesForElem(Object o,
-                                            String path, boolean deps) {
-        Vector ret = new Vector();
-        if (generatedFiles.contains(o)) {
-            return ret; // generated already
+    private class FilesGeneration {
+
+        private final String path;
+
+        private final boolean deps;
+
+        /**
+         * The pool of worker threads, or null if the text of the files is
+         * generated in the calling thread.
+         */
+        private final ExecutorService executor;
+
+        /**
+         * The classifiers which files are being generated by the workers.
+         */
+        private final Map<Object, Future<ClassifierFiles>> pending =
+            new HashMap<Object, Future<ClassifierFiles>>();
+
+        /**
+         * The classifiers which files are already written.
+         */
+        private final Set<Object> generated = new HashSet<Object>();
+
+        /**
+         * The number of files written.
+         */
+        private int written;
+
+        /**
+         * The number of files left untouched, as their content didn't
+         * change.
+         */
+        private int unchanged;
+
+        /**
+         * The date and year of the generation, formatted once for the
+         * templates of all the files.
+         */
+        private final String date;
+
+        private final String year;
+
+        FilesGeneration(String thePath, boolean theDeps,
+                ExecutorService theExecutor) {
+            path = thePath;
+            deps = theDeps;
+            executor = theExecutor;
+            GregorianCalendar cal = new GregorianCalendar();
+            date = DateFormat.getDateInstance(DateFormat.DEFAULT).format(
+                cal.getTime());
+            year = Integer.toString(cal.get(Calendar.YEAR));
         }
-        if (!getFacade().isAClass(o) && !getFacade().isAInterface(o)) {
-            return ret; // not a class or interface
+
+        /**
+         * Submit the generation of the text of the files of an element to
+         * the workers, if there are workers and it has files to generate.
+         */
+        void submit(Object o) {
+            final Object cls = getGeneratedClassifier(o);
+            if (executor == null || cls == null || generated.contains(cls)
+                || pending.containsKey(cls)) {
+                return;
+            }
+            pending.put(cls, executor.submit(new Callable<ClassifierFiles>() {
+                public ClassifierFiles call() {
+                    return generateClassifierFiles(cls, path, date, year);
+                }
+            }));
         }
-        while (isAInnerClass(o)) {
-            o = getFacade().getNamespace(o);
+
+        /*
+         * Generate files for element 'o' (and dependencies, eventually).
+         * Return the collection of files (as Strings).
+         * Do nothing (and return an empty collection) if the files of 'o' are
+         * generated already.
+         */
+        Collection generateFilesForElem(Object o) {
+            Vector ret = new Vector();
+            Object cls = getGeneratedClassifier(o);
+            if (cls == null || !generated.add(cls)) {
+                return ret;
+            }
+            Future<ClassifierFiles> future = pending.remove(cls);
+            ClassifierFiles files = future != null ? waitFor(future)
+                : generateClassifierFiles(cls, path, date, year);
+            ret.addAll(writeClassifierFiles(files));
+            if (deps) {
+                for (Object dependency : files.dependencies) {
+                    submit(dependency);
+                }
+                for (Object dependency : files.dependencies) {
+                    ret.add(generateFilesForElem(dependency));
+                }
+            }
+            return ret;
         }
-        String pathname = null;
 
-        // use unique section for both passes -> allow move of
-        // normal function body to inline and vice versa
-        if (Section.getUseSect() != Section.SECT_NONE) {
-            sect = new Section();
+        /**
+         * Write the files of a classifier, preserving the sections of the
+         * existing ones. A file which would be written with the content it
+         * already has, but for the date of the generation in its template,
+         * is left untouched, so that its modification time doesn't trigger
+         * the rebuild of the C++ project.
+         *
+         * @param files the text of the files
+         * @return the pathnames of the files generated
+         */
+        Collection writeClassifierFiles(ClassifierFiles files) {
+            Vector ret = new Vector();
+            // use unique section for both passes -> allow move of
+            // normal function body to inline and vice versa
+            Section sect = null;
+            if (Section.getUseSect() != Section.SECT_NONE) {
+                sect = new Section();
+            }
 
             /*
              * 2002-11-28 Achim Spangler
              * first read header and source file into global/unique section
              */
-            for (generatorPass = HEADER_PASS;
-                 generatorPass <= SOURCE_PASS;
-                 generatorPass++) {
-                pathname = createDirectoriesPathname(o, path);
-                //String pathname = path + filename;
+            byte[][] existing = new byte[files.pathnames.length][];
+            String[] existingTexts = new String[files.pathnames.length];
+            for (int i = 0; i < files.pathnames.length; i++) {
                 // TODO: package, project basepath, tagged values to configure
-                File f = new File(pathname);
-                if (f.exists()) {
-                    LOG.info("Generating (updated) " + f.getPath());
-                    sect.read(pathname);
-                    File bakFile = new File(pathname + ".bak");
-                    if (bakFile.exists()) {
-                        bakFile.delete();
-                    }
-                    f.renameTo(bakFile);
-                } else {
+                File f = new File(files.pathnames[i]);
+                if (!f.exists()) {
                     LOG.info("Generating (new) " + f.getPath());
+                    continue;
+                }
+                LOG.info("Generating (updated) " + f.getPath());
+                try {
+                    existing[i] = Section.readBytes(f);
+                    existingTexts[i] = Section.decode(existing[i]);
+                    if (sect != null) {
+                        sect.read(new StringReader(existingTexts[i]));
+                    }
+                } catch (IOException e) {
+                    LOG.severe("FAILED reading: " + f.getPath() + ": " + e);
                 }
             }
-        }
 
-        Set dependencies = null;
-        if (deps) dependencies = new TreeSet();
-        /**
-         * 2002-11-28 Achim Spangler
-         * run basic generation function two times for header and implementation
-         */
-        for (generatorPass = HEADER_PASS;
-             generatorPass <= SOURCE_PASS;
-             generatorPass++) {
-            pathname = createDirectoriesPathname(o, path);
-            String fileContent = generateFileAsString(o, pathname);
-            if (fileContent.length() == 0) continue;
-            BufferedWriter fos = null;
-            //String pathname = path + filename;
-            // TODO: package, project basepath, tagged values to configure
-            File f = new File(pathname);
-            try {
-                // TODO: This is using the default platform character encoding
-                // specifying an encoding will produce more predictable results
-                fos = new BufferedWriter (new FileWriter (f));
-                writeTemplate(o, path, fos);
-                fos.write(fileContent);
-                fos.newLine();
-            }
-            catch (IOException exp) { }
-            finally {
-                try {
-                    if (fos != null) fos.close();
+            for (int i = 0; i < files.pathnames.length; i++) {
+                if (files.texts[i] == null) continue;
+                String pathname = files.pathnames[i];
+                String text = files.texts[i];
+                if (sect != null) {
+                    // output lost sections only in the second path
+                    // -> sections which are moved from header(inline) to
+                    // source file are prevented to be outputted in header
+                    // pass
+                    text = sect.merge(text, indent,
+                        i == SOURCE_PASS - HEADER_PASS);
                 }
-                catch (IOException exp) {
-                    LOG.severe("FAILED: " + f.getPath());
+                File f = new File(pathname);
+                try {
+                    byte[] bytes = text.getBytes("UTF-8");
+                    if (existing[i] != null
+                        && (Arrays.equals(existing[i], bytes)
+                            || differsByDateOnly(files, i, existingTexts[i],
+                                text))) {
+                        unchanged++;
+                        LOG.info("unchanged: " + pathname);
+                    } else {
+                        replaceFile(f, bytes, existing[i]);
+                        written++;
+                        LOG.info("written: " + pathname);
+                    }
+                } catch (IOException e) {
+                    LOG.severe("FAILED: " + f.getPath() + ": " + e);
                 }
+                LOG.info("----- end updating " + pathname + "-----");
+                ret.add(pathname);
             }
+            return ret;
+        }
+    }
 
-            LOG.info("written: " + pathname);
+    /**
+     * Check if the existing text of a file differs from the one to write
+     * only by the date and year of the generation in the template at its
+     * top, which change each day.
+     *
+     * @param files the files of the classifier
+     * @param i the index of the file
+     * @param existingText the existing text of the file
+     * @param text the text to write
+     * @return true if the text of the file doesn't need to be written
+     */
+    private static boolean differsByDateOnly(ClassifierFiles files, int i,
+            String existingText, String text) {
+        FileTemplate template = files.templates[i];
+        if (template == null) {
+            return false;
+        }
+        String top = template.apply(files.templateValues[i]);
+        if (!text.startsWith(top)) {
+            return false;
+        }
+        String[] values = new String[files.templateValues[i].length];
+        for (int j = 0; j < values.length; j++) {
+            values[j] = files.templateValues[i][j] == null ? ""
+                : files.templateValues[i][j];
+        }
+        values[FileTemplate.DATE] = null;
+        values[FileTemplate.YEAR] = null;
+        int end = template.match(existingText, values);
+        return end != -1
+            && existingText.length() - end == text.length() - top.length()
+            && existingText.regionMatches(end, text, top.length(),
+                text.length() - top.length());
+    }
 
-            if (Section.getUseSect() != Section.SECT_NONE) {
-                // output lost sections only in the second path
-                // -> sections which are moved from header(inline) to source
-                // file are prevented to be outputted in header pass
-                File outFile = new File(pathname + ".out");
-                if (outFile.exists()) {
-                    outFile.delete(); // remove junk
-                }
-                if (generatorPass == HEADER_PASS)   {
-                    sect.write(pathname, indent, false);
-                } else {
-                    sect.write(pathname, indent, true);
-                }
+    /**
+     * @return the classifier which files hold the given element, i.e., the
+     *         outermost class of an inner class, or null if the element
+     *         isn't a class nor an interface
+     */
+    private static Object getGeneratedClassifier(Object o) {
+        if (!getFacade().isAClass(o) && !getFacade().isAInterface(o)) {
+            return null; // not a class or interface
+        }
+        while (isAInnerClass(o)) {
+            o = getFacade().getNamespace(o);
+        }
+        return o;
+    }
 
-                if (outFile.exists()) {
-                    assert f.exists();
-                    f.delete();
-                    outFile.renameTo(f);
-                    LOG.info("added sections to: " + pathname);
+    /**
+     * Replace a file, keeping its previous version with the extension
+     * <code>.bak</code>. The new content is written into a temporary file,
+     * which is then renamed over the file, so that the file is never left
+     * half written nor missing, except where renaming over an existing file
+     * fails, as on Windows, and the file has to be deleted first.
+     *
+     * @param f the file
+     * @param bytes the new content of the file
+     * @param previous the previous content of the file, copied to the
+     *            backup file, or null if there is none
+     * @throws IOException if the file can't be written
+     */
+    private static void replaceFile(File f, byte[] bytes, byte[] previous)
+        throws IOException {
+        if (previous != null) {
+            writeFile(new File(f.getPath() + ".bak"), previous);
+        }
+        File tmpFile = File.createTempFile(f.getName(), ".tmp",
+            f.getAbsoluteFile().getParentFile());
+        try {
+            writeFile(tmpFile, bytes);
+            if (!tmpFile.renameTo(f)) {
+                if (!f.delete() || !tmpFile.renameTo(f)) {
+                    throw new IOException("Can't rename " + tmpFile + " to "
+                        + f);
                 }
             }
-            LOG.info("----- end updating " + pathname + "-----");
-            ret.add(pathname);
-            if (deps) {
-                dependencies.add(includeCls);
-                dependencies.add(predeclCls);
+        } finally {
+            if (tmpFile.exists()) {
+                tmpFile.delete();
             }
         }
-        cleanupGenerator();
-        // reset generator pass to NONE for the notation to be correct
-        generatorPass = NONE_PASS;
-        generatedFiles.add(o);
-        if (deps) {
-            Iterator it = dependencies.iterator();
-            while (it.hasNext()) {
-                ret.add(generateFilesForElem(it.next(), path, deps));
+    }
+
+    private static void writeFile(File f, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
             }
+        } finally {
+            out.close();
         }
-        
-        return ret;
     }
-    
+
+    private static ClassifierFiles waitFor(Future<ClassifierFiles> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("Error generating", e.getCause());
+        }
+    }
+
     /*
      * @see org.argouml.uml.generator.CodeGenerator#generate(java.util.Collection, boolean)
      */
     public Collection generate(Collection elements, boolean deps) {
+        return generate(new GenerationContext(), elements, deps);
+    }
+
+    private Collection generate(GenerationContext ctx, Collection elements,
+            boolean deps) {
         List ret = new ArrayList();
-        startFileGeneration();
         for (Iterator it = elements.iterator(); it.hasNext(); ) {
             Object elem = it.next();
             String path = generatePath(elem);
             Set dependencies = null;
             if (deps) dependencies = new TreeSet();
 
-            for (generatorPass = HEADER_PASS;
-                 generatorPass <= SOURCE_PASS;
-                 generatorPass++) {
-                String name = getFacade().getName(elem) + getFileExtension();
-                String content = generateFileAsString(elem, path + name);
+            for (ctx.generatorPass = HEADER_PASS;
+                 ctx.generatorPass <= SOURCE_PASS;
+                 ctx.generatorPass++) {
+                String name =
+                    getFacade().getName(elem) + getFileExtension(ctx);
+                String content = generateFileAsString(ctx, elem, path + name);
                 SourceUnit su = new SourceUnit(name, path, content);
                 ret.add(su);
             }
-            generatorPass = NONE_PASS;
-            generatedFiles.add(elem);
+            ctx.generatorPass = NONE_PASS;
+            ctx.generatedFiles.add(elem);
             if (deps) {
-                ret.add(generate(dependencies, deps));
+                ret.add(generate(ctx, dependencies, deps));
             }
         }
-        endFileGeneration();
         return ret;
     }
 
@@ -3026,14 +3339,31 @@ public class GeneratorCpp implements CodeGenerator {
      */
     public Collection generateFiles(Collection elements, String path,
             boolean deps) {
-        List ret = new ArrayList();
-        startFileGeneration();
-        for (Iterator it = elements.iterator(); it.hasNext(); ) {
-            Object elem = it.next();
-            ret.addAll(generateFilesForElem(elem, path, deps));
+        int nThreads = threads;
+        ExecutorService executor = nThreads > 1
+            ? Executors.newFixedThreadPool(nThreads) : null;
+        try {
+            FilesGeneration generation =
+                new FilesGeneration(path, deps, executor);
+            List elems = new ArrayList(elements);
+            List ret = new ArrayList();
+            // bound the number of generated files held in memory
+            int window = nThreads * 2;
+            int submitted = 0;
+            for (int i = 0; i < elems.size(); i++) {
+                while (submitted < elems.size() && submitted < i + window) {
+                    generation.submit(elems.get(submitted++));
+                }
+                ret.addAll(generation.generateFilesForElem(elems.get(i)));
+            }
+            LOG.info("Generated files: " + generation.written + " written, "
+                + generation.unchanged + " unchanged");
+            return ret;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
-        endFileGeneration();
-        return ret;
     }
 
     /*
@@ -3041,14 +3371,12 @@ public class GeneratorCpp implements CodeGenerator {
      */
     public Collection generateFileList(Collection elements, boolean deps) {
         List ret = new ArrayList();
-        startFileGeneration();
         for (Iterator it = elements.iterator(); it.hasNext(); ) {
             Object elem = it.next();
             // FIXME: check for interfaces, inner classes, deps, etc. 
             ret.add(getFacade().getName(elem) + ".cpp");
             ret.add(getFacade().getName(elem) + ".h");
         }
-        endFileGeneration();
         return null;
     }
     
@@ -3069,7 +3397,8 @@ public class GeneratorCpp implements CodeGenerator {
      * @param cls object
      * @return String with generated methods
      */
-    private String generateInlinedMethodsOutsideClass(Object cls) {
+    private String generateInlinedMethodsOutsideClass(GenerationContext ctx,
+            Object cls) {
         String s = new String();
         Collection op = getFacade().getOperations(cls);
         if (op.isEmpty()) {
@@ -3081,8 +3410,8 @@ public class GeneratorCpp implements CodeGenerator {
             s += indent + "// Operations" + LINE_SEPARATOR;
         }
         
-        int tmpGeneratorPass = generatorPass;
-        generatorPass = SOURCE_PASS;
+        int tmpGeneratorPass = ctx.generatorPass;
+        ctx.generatorPass = SOURCE_PASS;
         
         String opString = new String();
         Iterator opIterator = op.iterator();
@@ -3092,14 +3421,14 @@ public class GeneratorCpp implements CodeGenerator {
             if (!getFacade().isAbstract(bf)) {
                 Inline inlineStyle = Inline.getInlineOperationModifierType(bf);
                 if (inlineStyle.isMethodBodyOutsideClass()) {
-                    opString += generateOperation(bf, false);
-                    opString += LINE_SEPARATOR + generateMethodBody(bf)
+                    opString += generateOperation(ctx, bf, false);
+                    opString += LINE_SEPARATOR + generateMethodBody(ctx, bf)
                                 + LINE_SEPARATOR;
                 }
             }
         } // end loop through all operations
         
-        generatorPass = tmpGeneratorPass;
+        ctx.generatorPass = tmpGeneratorPass;
         
         if (opString.length() != 0) {
             s += opString;
@@ -126,7 +126,7 @@ public enum Inline {
     /**
      * Default 'inline' value
      */
-    private static Inline defaultInline = defInsideClass;
+    private static volatile Inline defaultInline = defInsideClass;
     
     /**
      * Get the inline operation modifier type for op.
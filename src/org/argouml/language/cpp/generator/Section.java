@@ -38,11 +38,35 @@
 
 package org.argouml.language.cpp.generator;
 
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
 import org.argouml.uml.generator.AbstractSection;
 
 /**
  * Reading and writing preserved sections from the code.
  *
+ * The sections are merged in memory into the generated text, see
+ * {@link #merge(String, String, boolean)}, and the files are written in
+ * UTF-8. The existing files are read in UTF-8 too, unless they aren't valid
+ * UTF-8, see {@link #decode(byte[])}.
+ *
  * @since 24. Februar 2002, 15:30
  */
 public class Section extends AbstractSection {
@@ -54,7 +78,7 @@ public class Section extends AbstractSection {
 	/** Brief section. */
     public static final int SECT_BRIEF = 2;
 	/** The section to use according to user settings. */
-    private static int useSections = SECT_NORMAL;
+    private static volatile int useSections = SECT_NORMAL;
 
     static void setUseSect(int use) {
 	useSections = use;
@@ -69,6 +93,16 @@ public class Section extends AbstractSection {
     private static final String LINE_SEPARATOR =
 	System.getProperty("line.separator");
 
+    private static final Logger LOG = Logger.getLogger(
+            Section.class.getName());
+
+    /**
+     * The content of the preserved sections by their id, in the order in
+     * which they were read.
+     */
+    private final Map<String, String> sections =
+        new LinkedHashMap<String, String>();
+
     /*
      * @see org.argouml.uml.generator.AbstractSection#generate(
      *      java.lang.String, java.lang.String)
@@ -117,4 +151,184 @@ public class Section extends AbstractSection {
 	}
         return s;
     }
+
+    /**
+     * Read the preserved sections of a file.
+     *
+     * @param filename the name of the file
+     */
+    @Override
+    public void read(String filename) {
+        try {
+            read(new StringReader(decode(readBytes(new File(filename)))));
+        } catch (IOException e) {
+            LOG.severe("Error reading the sections of " + filename + ": "
+                + e);
+        }
+    }
+
+    /**
+     * Read the preserved sections of some text.
+     *
+     * @param reader the reader of the text
+     * @throws IOException if the text can't be read
+     */
+    void read(Reader reader) throws IOException {
+        BufferedReader fr = new BufferedReader(reader);
+        StringBuffer content = new StringBuffer();
+        boolean inSection = false;
+        for (String line = fr.readLine(); line != null;
+             line = fr.readLine()) {
+            String sectionId = getSectId(line);
+            if (inSection) {
+                if (sectionId != null) {
+                    inSection = false;
+                    sections.put(sectionId, content.toString());
+                    content = new StringBuffer();
+                } else {
+                    content.append(line).append(LINE_SEPARATOR);
+                }
+            } else if (sectionId != null) {
+                inSection = true;
+            }
+        }
+    }
+
+    /**
+     * Merge the preserved sections into a file, writing the result into
+     * the file with the same name and the extension <code>.out</code>.
+     *
+     * @param filename the name of the file
+     * @param indent the current indentation
+     * @param outputLostSections true if the sections which aren't in the
+     *            file are output at its end
+     */
+    @Override
+    public void write(String filename, String indent,
+            boolean outputLostSections) {
+        try {
+            String text = decode(readBytes(new File(filename)));
+            Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(filename + ".out")), "UTF-8");
+            try {
+                writer.write(merge(text, indent,
+                    outputLostSections));
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            LOG.severe("Error writing the sections of " + filename + ": "
+                + e);
+        }
+    }
+
+    /**
+     * Read the content of a file.
+     *
+     * @param f the file
+     * @return the bytes of the file
+     * @throws IOException if the file can't be read
+     */
+    static byte[] readBytes(File f) throws IOException {
+        byte[] bytes = new byte[(int) f.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(f));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * Decode the content of an existing file. The files are written in
+     * UTF-8, but, those written before, or edited since, may be in the
+     * platform encoding, which is used when the content isn't valid UTF-8,
+     * so that the characters of the sections aren't replaced.
+     *
+     * @param bytes the content of the file
+     * @return the text of the file
+     */
+    static String decode(byte[] bytes) {
+        try {
+            return Charset.forName("UTF-8").newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            return new String(bytes);
+        }
+    }
+
+    /**
+     * Merge the preserved sections into generated text. The content of each
+     * section of the text which was read replaces its generated content and
+     * the section is removed, so that the same sections may be merged into
+     * the header and then into the source file.
+     *
+     * @param text the generated text
+     * @param indent the current indentation
+     * @param outputLostSections true if the sections which aren't in the
+     *            text are output at its end
+     * @return the text with the preserved sections
+     */
+    String merge(String text, String indent, boolean outputLostSections) {
+        StringBuffer result = new StringBuffer(text.length());
+        BufferedReader fr = new BufferedReader(new StringReader(text));
+        try {
+            String line = fr.readLine();
+            while (line != null) {
+                String sectionId = getSectId(line);
+                if (sectionId != null) {
+                    String content = sections.get(sectionId);
+                    if (content != null) {
+                        result.append(line).append(LINE_SEPARATOR);
+                        result.append(content);
+                        // skip the generated content until the end of the
+                        // section
+                        String endSectionId = null;
+                        do {
+                            line = fr.readLine();
+                            if (line == null) {
+                                LOG.severe("Reached the end of the text "
+                                    + "while looking for the end of the "
+                                    + "section " + sectionId);
+                                return result.toString();
+                            }
+                            endSectionId = getSectId(line);
+                        } while (endSectionId == null);
+                        if (!endSectionId.equals(sectionId)) {
+                            LOG.severe("Mismatch between the section "
+                                + sectionId + " and its end "
+                                + endSectionId);
+                        }
+                    }
+                    sections.remove(sectionId);
+                }
+                result.append(line);
+                line = fr.readLine();
+                if (line != null) {
+                    result.append(LINE_SEPARATOR);
+                }
+            }
+        } catch (IOException e) {
+            // a StringReader doesn't throw
+            throw new IllegalStateException(e);
+        }
+        if (!sections.isEmpty() && outputLostSections) {
+            result.append("/* lost code following: " + LINE_SEPARATOR);
+            Iterator<Map.Entry<String, String>> itr =
+                sections.entrySet().iterator();
+            while (itr.hasNext()) {
+                Map.Entry<String, String> entry = itr.next();
+                result.append(indent + "// section " + entry.getKey()
+                    + " begin" + LINE_SEPARATOR);
+                result.append(entry.getValue());
+                result.append(indent + "// section " + entry.getKey()
+                    + " end" + LINE_SEPARATOR);
+            }
+            result.append("*/");
+        }
+        return result.toString();
+    }
 }
@@ -141,7 +141,51 @@ public class BaseProfile {
     }
 
     static String trimAndEnsureOneSpaceOnlyBetweenTokens(String typeName) {
-        return typeName.trim().replaceAll("\\s+", " ");
+        // called for every type reference, so, no regular expressions here
+        String trimmed = typeName.trim();
+        if (isNormalized(trimmed)) {
+            return trimmed;
+        }
+        StringBuilder sb = new StringBuilder(trimmed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (isWhitespace(c)) {
+                pendingSpace = true;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param trimmed a trimmed type name
+     * @return true if the tokens of the type name are separated by a single
+     *         space
+     */
+    private static boolean isNormalized(String trimmed) {
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (isWhitespace(c)
+                && (c != ' ' || isWhitespace(trimmed.charAt(i + 1)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param c a character
+     * @return true if c is matched by <code>\s</code> in a regular expression
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+            || c == '\f' || c == '\r';
     }
 
     /**
@@ -110,6 +110,13 @@ public class ProfileCpp extends BaseProfile {
      * but, the former aren't possible and the later I haven't checked yet...
      */
     public static final String TV_NAME_CLASS_SPECIFIER = "cpp_class_specifier";
+
+    /**
+     * Name of the C++ source file TaggedValue, set by the reverse engineering
+     * to the file where a class is defined; applicable to classes. Unlike
+     * src_path, it has no effect on the code generation.
+     */
+    public static final String TV_NAME_SOURCE_FILE = "cpp_source_file";
     
     /**
      * Name of the C++ source_incl TaggedValues. 
@@ -312,6 +319,13 @@ public class ProfileCpp extends BaseProfile {
         return getTagDefinition(STEREO_NAME_CLASS, TV_NAME_CLASS_SPECIFIER);
     }
 
+    public Object getSourceFileTagDefinition() {
+        Object td = getTagDefinition(STEREO_NAME_CLASS, TV_NAME_SOURCE_FILE);
+        // the cppClass stereotype of a model made with an older profile
+        // doesn't define it
+        return td != null ? td : getTagDefinition(TV_NAME_SOURCE_FILE);
+    }
+
     public Object getMultiplicityTypeTagDefinition() {
         return getTagDefinition(STEREO_NAME_ATTRIBUTE, 
                 TV_NAME_MULTIPLICITY_TYPE);
@@ -0,0 +1,54 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import antlr.CommonToken;
+
+/**
+ * The token produced by {@link CPPLexer}, which, besides the line, keeps the
+ * name of the file where it was read from. For preprocessed input, that is
+ * the header or source file given by the last line marker. When read from a
+ * {@link CompactTokenStream}, it also keeps its index in the stream.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class CPPToken extends CommonToken {
+
+    private String filename;
+
+    private int index = -1;
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public void setFilename(String name) {
+        filename = name;
+    }
+
+    /**
+     * @return the index of the token in its translation unit, or -1 if it
+     *         wasn't read from a {@link CompactTokenStream}
+     */
+    int getIndex() {
+        return index;
+    }
+
+    void setIndex(int theIndex) {
+        index = theIndex;
+    }
+}
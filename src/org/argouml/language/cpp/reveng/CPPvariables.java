@@ -138,4 +138,9 @@ public class CPPvariables {
      */
     public static final String OT_CLASS = "otClass";
     
+    /**
+     * Function template string identifier.
+     */
+    public static final String OT_FUNCTION_TEMPLATE = "otFunctionTemplate";
+    
 }
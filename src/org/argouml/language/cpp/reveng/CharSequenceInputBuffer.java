@@ -0,0 +1,98 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import antlr.CharScanner;
+import antlr.InputBuffer;
+
+/**
+ * An {@link InputBuffer} which reads the characters directly from a
+ * {@link CharSequence}, e.g., the preprocessed text of a translation unit or
+ * a memory mapped file, instead of queueing them from a
+ * {@link java.io.Reader}.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class CharSequenceInputBuffer extends InputBuffer {
+
+    private final CharSequence chars;
+
+    /**
+     * The index of the next character to consume.
+     */
+    private int position;
+
+    /**
+     * @param theChars the characters to be lexed
+     */
+    CharSequenceInputBuffer(CharSequence theChars) {
+        chars = theChars;
+    }
+
+    @Override
+    public char LA(int i) {
+        int index = position + i - 1;
+        return index < chars.length() ? chars.charAt(index)
+            : CharScanner.EOF_CHAR;
+    }
+
+    @Override
+    public void consume() {
+        position++;
+    }
+
+    @Override
+    public void fill(int amount) {
+        // all the characters are available
+    }
+
+    @Override
+    public int mark() {
+        nMarkers++;
+        return position;
+    }
+
+    @Override
+    public void rewind(int mark) {
+        position = mark;
+        nMarkers--;
+    }
+
+    @Override
+    public void commit() {
+        nMarkers--;
+    }
+
+    @Override
+    public boolean isMarked() {
+        return nMarkers != 0;
+    }
+
+    @Override
+    public void reset() {
+        nMarkers = 0;
+        position = 0;
+    }
+
+    @Override
+    public String getLAChars() {
+        return chars.subSequence(position, chars.length()).toString();
+    }
+
+    @Override
+    public String getMarkedChars() {
+        return "";
+    }
+}
@@ -0,0 +1,193 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import antlr.Token;
+import antlr.TokenStream;
+import antlr.TokenStreamException;
+
+/**
+ * A {@link TokenStream} that reads all the tokens of a translation unit up
+ * front and keeps them in primitive arrays - type, line, column, text and
+ * file name - instead of token objects. The texts and file names are
+ * interned in a symbol table, so, each distinct identifier is kept once.
+ *
+ * The lexer reuses a single token object while it is read. The parser reads
+ * the types straight from the arrays, see {@link #getType(int)}, and the
+ * tokens which it needs are created on demand and carry their index in the
+ * stream, see {@link CPPToken#getIndex()}. The last ones created are kept
+ * for the lookahead to get them again.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class CompactTokenStream implements TokenStream {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int TOKENS_CACHED = 64;
+
+    private int size;
+
+    private int[] types = new int[INITIAL_CAPACITY];
+
+    private int[] lines = new int[INITIAL_CAPACITY];
+
+    private int[] columns = new int[INITIAL_CAPACITY];
+
+    /**
+     * The symbol ids of the texts, -1 for none.
+     */
+    private int[] texts = new int[INITIAL_CAPACITY];
+
+    /**
+     * The symbol ids of the file names, -1 for none.
+     */
+    private int[] filenames = new int[INITIAL_CAPACITY];
+
+    private final List<String> symbols = new ArrayList<String>();
+
+    private final Map<String, Integer> symbolIds =
+        new HashMap<String, Integer>();
+
+    private int next;
+
+    /**
+     * The tokens created last, by their index modulo the length.
+     */
+    private final CPPToken[] tokens = new CPPToken[TOKENS_CACHED];
+
+    /**
+     * Reads all the tokens from source.
+     *
+     * @param source the stream of tokens of a translation unit, normally the
+     *            lexer
+     * @throws TokenStreamException if source throws it
+     */
+    CompactTokenStream(TokenStream source) throws TokenStreamException {
+        if (source instanceof CPPLexer) {
+            // the fields of each token are copied before the next one
+            ((CPPLexer) source).setReuseTokens(true);
+        }
+        Token token;
+        do {
+            token = source.nextToken();
+            add(token);
+        } while (token.getType() != Token.EOF_TYPE);
+    }
+
+    private void add(Token token) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = grow(types, capacity);
+            lines = grow(lines, capacity);
+            columns = grow(columns, capacity);
+            texts = grow(texts, capacity);
+            filenames = grow(filenames, capacity);
+        }
+        types[size] = token.getType();
+        lines[size] = token.getLine();
+        columns[size] = token.getColumn();
+        texts[size] = intern(token.getText());
+        filenames[size] = intern(token.getFilename());
+        size++;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private int intern(String symbol) {
+        if (symbol == null) {
+            return -1;
+        }
+        Integer id = symbolIds.get(symbol);
+        if (id == null) {
+            id = symbols.size();
+            symbols.add(symbol);
+            symbolIds.put(symbol, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the number of tokens, including the end of file
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the type of the token
+     */
+    int getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @param index the index of a token
+     * @return the text of the token, which may be null
+     */
+    String getText(int index) {
+        return getSymbol(texts[index]);
+    }
+
+    private String getSymbol(int id) {
+        return id < 0 ? null : symbols.get(id);
+    }
+
+    /**
+     * Get a token, which is the same object as the one returned by the
+     * previous calls with the same index, unless it was created many tokens
+     * before.
+     *
+     * @param index the index of a token, which beyond the end of the stream
+     *            is the one of the end of file
+     * @return the token
+     */
+    CPPToken getToken(int index) {
+        if (index >= size) {
+            index = size - 1;
+        }
+        int slot = index % TOKENS_CACHED;
+        CPPToken token = tokens[slot];
+        if (token == null || token.getIndex() != index) {
+            token = new CPPToken();
+            token.setType(types[index]);
+            token.setLine(lines[index]);
+            token.setColumn(columns[index]);
+            token.setText(getText(index));
+            token.setFilename(getSymbol(filenames[index]));
+            token.setIndex(index);
+            tokens[slot] = token;
+        }
+        return token;
+    }
+
+    public Token nextToken() {
+        int index = next;
+        if (next < size - 1) {
+            next++;
+        }
+        return getToken(index);
+    }
+}
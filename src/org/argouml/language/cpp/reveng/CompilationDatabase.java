@@ -0,0 +1,326 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compilation database, i.e., a <code>compile_commands.json</code> file as
+ * written by CMake, Bear and other build tools, which holds the command with
+ * which each translation unit of a project is compiled.
+ *
+ * The file is a JSON array with an object for each translation unit, which
+ * has its <code>file</code>, the <code>directory</code> in which the compiler
+ * runs and either the <code>arguments</code> of the compiler or its
+ * <code>command</code> line. Relative paths are resolved against the
+ * directory. When a translation unit has several commands, the first one is
+ * used.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class CompilationDatabase {
+
+    /**
+     * The commands by canonical path of their translation units, in the
+     * order of the file.
+     */
+    private final Map<String, CompileCommand> commands =
+        new LinkedHashMap<String, CompileCommand>();
+
+    /**
+     * Read a compilation database.
+     *
+     * @param json the <code>compile_commands.json</code> file
+     * @throws IOException if the file can't be read or isn't a compilation
+     *             database
+     */
+    CompilationDatabase(File json) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(json), "UTF-8"));
+        Object entries;
+        try {
+            entries = new JsonParser(json, reader).parse();
+        } finally {
+            reader.close();
+        }
+        if (!(entries instanceof List)) {
+            throw new IOException("Not a compilation database: " + json);
+        }
+        for (Object entry : (List) entries) {
+            if (!(entry instanceof Map)) {
+                throw new IOException("Invalid entry in " + json + ": "
+                    + entry);
+            }
+            add(json, (Map) entry);
+        }
+    }
+
+    private void add(File json, Map entry) throws IOException {
+        Object directoryName = entry.get("directory");
+        Object fileName = entry.get("file");
+        if (!(directoryName instanceof String)
+            || !(fileName instanceof String)) {
+            throw new IOException("Invalid entry in " + json + ": " + entry);
+        }
+        File directory = new File((String) directoryName);
+        File file = new File((String) fileName);
+        if (!file.isAbsolute()) {
+            file = new File(directory, (String) fileName);
+        }
+        List<String> arguments = new ArrayList<String>();
+        if (entry.get("arguments") instanceof List) {
+            for (Object argument : (List) entry.get("arguments")) {
+                arguments.add(String.valueOf(argument));
+            }
+        } else if (entry.get("command") instanceof String) {
+            arguments = splitCommand((String) entry.get("command"));
+        }
+        String key = file.getCanonicalPath();
+        if (!commands.containsKey(key)) {
+            commands.put(key, new CompileCommand(file, directory, arguments));
+        }
+    }
+
+    /**
+     * Get the command of a translation unit.
+     *
+     * @param f the translation unit
+     * @return the command of the translation unit or null if it isn't in the
+     *         database
+     * @throws IOException if the canonical path of the file can't be found
+     */
+    CompileCommand getCommand(File f) throws IOException {
+        return commands.get(f.getCanonicalPath());
+    }
+
+    /**
+     * @return the commands of all the translation units, in the order of the
+     *         file
+     */
+    Collection<CompileCommand> getCommands() {
+        return commands.values();
+    }
+
+    /**
+     * Split a command line into its arguments, as a POSIX shell would do for
+     * the whitespace, quotes and backslashes.
+     *
+     * @param command the command line
+     * @return the arguments
+     */
+    static List<String> splitCommand(String command) {
+        List<String> arguments = new ArrayList<String>();
+        StringBuilder argument = null;
+        char quote = 0;
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                if (argument != null) {
+                    arguments.add(argument.toString());
+                    argument = null;
+                }
+                continue;
+            }
+            if (argument == null) {
+                argument = new StringBuilder();
+            }
+            if (c == quote) {
+                quote = 0;
+            } else if (quote == 0 && (c == '\'' || c == '"')) {
+                quote = c;
+            } else if (c == '\\' && quote != '\'' && i + 1 < command.length()
+                && (quote == 0 || "\"\\$`".indexOf(command.charAt(i + 1))
+                    >= 0)) {
+                argument.append(command.charAt(++i));
+            } else {
+                argument.append(c);
+            }
+        }
+        if (argument != null) {
+            arguments.add(argument.toString());
+        }
+        return arguments;
+    }
+
+    /**
+     * A minimal JSON parser, which gives the objects as maps, the arrays as
+     * lists, the strings as strings and the other values as their text.
+     */
+    private static class JsonParser {
+        private final File file;
+
+        private final Reader reader;
+
+        private int next;
+
+        JsonParser(File theFile, Reader theReader) throws IOException {
+            file = theFile;
+            reader = theReader;
+            next = reader.read();
+        }
+
+        Object parse() throws IOException {
+            Object value = parseValue();
+            skipWhitespace();
+            if (next != -1) {
+                throw error("end of file");
+            }
+            return value;
+        }
+
+        private Object parseValue() throws IOException {
+            skipWhitespace();
+            if (next == '{') {
+                return parseObject();
+            } else if (next == '[') {
+                return parseArray();
+            } else if (next == '"') {
+                return parseString();
+            }
+            StringBuilder literal = new StringBuilder();
+            while (next != -1 && ",:]}".indexOf(next) < 0
+                && !Character.isWhitespace(next)) {
+                literal.append((char) next);
+                next = reader.read();
+            }
+            if (literal.length() == 0) {
+                throw error("value");
+            }
+            return literal.toString();
+        }
+
+        private Map<String, Object> parseObject() throws IOException {
+            Map<String, Object> object = new LinkedHashMap<String, Object>();
+            next = reader.read();
+            skipWhitespace();
+            if (next == '}') {
+                next = reader.read();
+                return object;
+            }
+            for (;;) {
+                skipWhitespace();
+                if (next != '"') {
+                    throw error("name");
+                }
+                String name = parseString();
+                skipWhitespace();
+                expect(':');
+                object.put(name, parseValue());
+                skipWhitespace();
+                if (next == '}') {
+                    next = reader.read();
+                    return object;
+                }
+                expect(',');
+            }
+        }
+
+        private List<Object> parseArray() throws IOException {
+            List<Object> array = new ArrayList<Object>();
+            next = reader.read();
+            skipWhitespace();
+            if (next == ']') {
+                next = reader.read();
+                return array;
+            }
+            for (;;) {
+                array.add(parseValue());
+                skipWhitespace();
+                if (next == ']') {
+                    next = reader.read();
+                    return array;
+                }
+                expect(',');
+            }
+        }
+
+        private String parseString() throws IOException {
+            StringBuilder string = new StringBuilder();
+            for (next = reader.read(); next != '"'; next = reader.read()) {
+                if (next == -1) {
+                    throw error("end of string");
+                }
+                if (next == '\\') {
+                    next = reader.read();
+                    switch (next) {
+                    case 'b':
+                        string.append('\b');
+                        break;
+                    case 'f':
+                        string.append('\f');
+                        break;
+                    case 'n':
+                        string.append('\n');
+                        break;
+                    case 'r':
+                        string.append('\r');
+                        break;
+                    case 't':
+                        string.append('\t');
+                        break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        for (int i = 0; i < hex.length; i++) {
+                            hex[i] = (char) reader.read();
+                        }
+                        try {
+                            string.append((char) Integer.parseInt(
+                                new String(hex), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("unicode escape");
+                        }
+                        break;
+                    case -1:
+                        throw error("end of string");
+                    default:
+                        string.append((char) next);
+                    }
+                } else {
+                    string.append((char) next);
+                }
+            }
+            next = reader.read();
+            return string.toString();
+        }
+
+        private void expect(char c) throws IOException {
+            if (next != c) {
+                throw error("'" + c + "'");
+            }
+            next = reader.read();
+        }
+
+        private void skipWhitespace() throws IOException {
+            while (next != -1 && Character.isWhitespace(next)) {
+                next = reader.read();
+            }
+        }
+
+        private IOException error(String expected) {
+            return new IOException("Invalid compilation database " + file
+                + ": expected " + expected);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.anarres.cpp.Feature;
+import org.anarres.cpp.LexerException;
+import org.anarres.cpp.Preprocessor;
+
+/**
+ * The preprocessor options with which a translation unit is compiled, as
+ * given by the command of a {@link CompilationDatabase}.
+ *
+ * Only the options that change the preprocessed text are kept: the include
+ * directories, given by <code>-I</code>, <code>-iquote</code> and
+ * <code>-isystem</code>, and the macros, defined by <code>-D</code> and
+ * undefined by <code>-U</code>, in the order of the command. The other
+ * options are ignored.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class CompileCommand {
+
+    private static final Logger LOG = Logger.getLogger(
+        CompileCommand.class.getName());
+
+    private final File file;
+
+    /**
+     * The directories of <code>-iquote</code>, searched for the headers
+     * included with double quotes only.
+     */
+    private final List<String> quoteIncludePath = new ArrayList<String>();
+
+    /**
+     * The directories of <code>-I</code>.
+     */
+    private final List<String> includePath = new ArrayList<String>();
+
+    /**
+     * The directories of <code>-isystem</code>, which headers are system
+     * headers.
+     */
+    private final List<String> systemIncludePath = new ArrayList<String>();
+
+    /**
+     * The names and values of the macros, in the order of the command, the
+     * value of an undefined macro being null.
+     */
+    private final List<String[]> macros = new ArrayList<String[]>();
+
+    /**
+     * Create the command of a translation unit which is compiled without
+     * preprocessor options.
+     *
+     * @param theFile the translation unit
+     */
+    CompileCommand(File theFile) {
+        this(theFile, null, Collections.<String>emptyList());
+    }
+
+    /**
+     * Create the command of a translation unit from the arguments of the
+     * compiler.
+     *
+     * @param theFile the translation unit
+     * @param directory the working directory of the compiler, against which
+     *            the relative include directories are resolved
+     * @param arguments the arguments of the compiler, with or without the
+     *            compiler itself
+     */
+    CompileCommand(File theFile, File directory, List<String> arguments) {
+        file = theFile;
+        Iterator<String> it = arguments.iterator();
+        while (it.hasNext()) {
+            String argument = it.next();
+            if (argument.startsWith("-iquote")) {
+                add(quoteIncludePath, directory, value(argument, 7, it));
+            } else if (argument.startsWith("-isystem")) {
+                add(systemIncludePath, directory, value(argument, 8, it));
+            } else if (argument.startsWith("-I")) {
+                add(includePath, directory, value(argument, 2, it));
+            } else if (argument.startsWith("-D")) {
+                define(value(argument, 2, it));
+            } else if (argument.startsWith("-U")) {
+                String name = value(argument, 2, it);
+                if (name != null) {
+                    macros.add(new String[] {name, null});
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the translation unit
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the directories of the system headers of the translation unit,
+     * which declarations aren't modeled.
+     *
+     * @param systemIncludes the directories of the system headers of the
+     *            import
+     * @return the directories of <code>-isystem</code> followed by the given
+     *         ones
+     */
+    List<String> getSystemRoots(List<String> systemIncludes) {
+        if (systemIncludePath.isEmpty()) {
+            return systemIncludes;
+        }
+        List<String> roots = new ArrayList<String>(systemIncludePath);
+        roots.addAll(systemIncludes);
+        return roots;
+    }
+
+    /**
+     * @return a key which is the same for the commands with the same include
+     *         directories, in the same order, since the headers they include
+     *         are found in the same files
+     */
+    String getIncludeKey() {
+        return quoteIncludePath + "|" + includePath + "|" + systemIncludePath;
+    }
+
+    /**
+     * Apply the options of the command to the preprocessor of the
+     * translation unit. As with the compiler, the headers included with angle
+     * brackets are searched for in the directories of <code>-I</code>, then
+     * in those of <code>-isystem</code> and last in the directories of the
+     * system headers of the import, while the headers included with double
+     * quotes are searched for in those of <code>-iquote</code> before. The
+     * preprocessed text has line markers, so that the parser knows the
+     * header of each declaration.
+     *
+     * @param preprocessor the preprocessor of the translation unit
+     * @param systemIncludes the directories of the system headers of the
+     *            import
+     * @throws LexerException if the value of a macro can't be lexed
+     */
+    void configure(Preprocessor preprocessor, List<String> systemIncludes)
+        throws LexerException {
+        List<String> path = new ArrayList<String>(includePath);
+        path.addAll(getSystemRoots(systemIncludes));
+        preprocessor.setQuoteIncludePath(quoteIncludePath);
+        preprocessor.setSystemIncludePath(path);
+        preprocessor.addFeature(Feature.LINEMARKERS);
+        for (String[] macro : macros) {
+            if (macro[1] == null) {
+                preprocessor.getMacros().remove(macro[0]);
+            } else {
+                preprocessor.addMacro(macro[0], macro[1]);
+            }
+        }
+    }
+
+    /**
+     * Get the value of an option, which is either the remainder of the
+     * argument or the next argument.
+     */
+    private static String value(String argument, int length,
+            Iterator<String> it) {
+        if (argument.length() > length) {
+            return argument.substring(length);
+        }
+        return it.hasNext() ? it.next() : null;
+    }
+
+    private static void add(List<String> path, File directory, String dir) {
+        if (dir == null) {
+            return;
+        }
+        File f = new File(dir);
+        if (!f.isAbsolute() && directory != null) {
+            f = new File(directory, dir);
+        }
+        path.add(f.getPath());
+    }
+
+    private void define(String definition) {
+        if (definition == null) {
+            return;
+        }
+        int equals = definition.indexOf('=');
+        String name = equals < 0 ? definition
+            : definition.substring(0, equals);
+        String value = equals < 0 ? "1" : definition.substring(equals + 1);
+        if (name.indexOf('(') >= 0) {
+            LOG.warning("Ignoring the function-like macro " + name
+                + " of the command of " + file);
+            return;
+        }
+        macros.add(new String[] {name, value});
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+}
@@ -41,17 +41,32 @@ package org.argouml.language.cpp.reveng;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.Reader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.anarres.cpp.CppReader;
+import org.anarres.cpp.LexerException;
 import org.anarres.cpp.Preprocessor;
 import org.argouml.configuration.Configuration;
 import org.argouml.configuration.ConfigurationKey;
@@ -62,8 +77,14 @@ import org.argouml.uml.reveng.FileImportUtils;
 import org.argouml.uml.reveng.ImportInterface;
 import org.argouml.uml.reveng.ImportSettings;
 import org.argouml.uml.reveng.ImporterManager;
+import org.argouml.uml.reveng.Setting;
+import org.argouml.uml.reveng.SettingsTypes;
 import org.argouml.util.SuffixFilter;
 
+import antlr.RecognitionException;
+import antlr.TokenStream;
+import antlr.TokenStreamException;
+
 /**
  * Implementation of the reverse engineering interface of ArgoUML,
  * <code>ImportInterface</code>, for the C++ module.
@@ -95,12 +116,150 @@ public class CppImport implements ImportInterface {
     private static final ConfigurationKey KEY_USER_WARNING = Configuration
             .makeKey("cpp", "reveng", "user", "warning");
 
+    /**
+     * Configuration key for the number of threads used to parse the
+     * translation units. With 1 - the default - the files are parsed
+     * sequentially in the calling thread.
+     */
+    static final ConfigurationKey KEY_IMPORT_THREADS = Configuration
+            .makeKey("cpp", "reveng", "import", "threads");
+
+    /**
+     * Configuration key for the incremental import. When true, translation
+     * units which preprocessed tokens didn't change since they were last
+     * imported into the model aren't parsed again. The default is false.
+     */
+    static final ConfigurationKey KEY_IMPORT_INCREMENTAL = Configuration
+            .makeKey("cpp", "reveng", "import", "incremental");
+
+    /**
+     * Configuration key for sharing the expansion of headers among the
+     * translation units of an import. The default is false.
+     */
+    static final ConfigurationKey KEY_IMPORT_HEADER_CACHE = Configuration
+            .makeKey("cpp", "reveng", "import", "headercache");
+
+    /**
+     * Configuration key for skipping the bodies of the function definitions,
+     * which the modeler ignores anyway. When true, the parser matches the
+     * curly braces of a body instead of parsing its statements. The default
+     * is false.
+     */
+    static final ConfigurationKey KEY_IMPORT_SKIP_BODIES = Configuration
+            .makeKey("cpp", "reveng", "import", "skipbodies");
+
+    /**
+     * Configuration key for memoizing the outcomes of the parser rules while
+     * the parser guesses, so that the declarations that several syntactic
+     * predicates start with are parsed once per token. The default is false.
+     */
+    static final ConfigurationKey KEY_IMPORT_MEMOIZE = Configuration
+            .makeKey("cpp", "reveng", "import", "memoize");
+
+    /**
+     * Configuration key for seeding the symbol table of the parser of each
+     * translation unit with the type names declared by the translation units
+     * parsed before it in the same import. It is ignored when several
+     * threads parse, as the names a translation unit would see would depend
+     * on those which happened to finish before it started, and so would the
+     * model. The default is false.
+     */
+    static final ConfigurationKey KEY_IMPORT_SHARE_SYMBOLS = Configuration
+            .makeKey("cpp", "reveng", "import", "sharesymbols");
+
+    /**
+     * Configuration key for the directories of the system headers, separated
+     * by the path separator. The headers included with angle brackets are
+     * searched for in these directories, and the declarations of the headers
+     * within them - as told by the line markers of the preprocessed files -
+     * aren't modeled, although their type names are known to the parser.
+     * The default is none.
+     */
+    static final ConfigurationKey KEY_IMPORT_SYSTEM_INCLUDES = Configuration
+            .makeKey("cpp", "reveng", "import", "systemincludes");
+
+    /**
+     * Configuration key for the compilation database - the
+     * <code>compile_commands.json</code> file of the build - of the files to
+     * import. When set, each translation unit is preprocessed with the
+     * include directories and macros of its compile command, and the
+     * selected files which aren't in the database, e.g., the headers, aren't
+     * imported on their own. The translation units are imported in the order
+     * of the database, with those that have the same include directories
+     * next to each other. The default is none.
+     */
+    static final ConfigurationKey KEY_IMPORT_COMPILATION_DATABASE =
+        Configuration.makeKey("cpp", "reveng", "import",
+            "compilationdatabase");
 
     /**
      * New top level model elements created during this reverse engineering
      * session.
      */
     private Collection newElements;
+
+    /**
+     * The manifest of the translation units imported into the model, or null
+     * if the import isn't incremental.
+     */
+    private ImportManifest manifest;
+
+    /**
+     * The cache of header expansions of this import, or null if it isn't
+     * used.
+     */
+    private HeaderCache headerCache;
+
+    /**
+     * Whether the bodies of the function definitions are skipped by the
+     * parser.
+     */
+    private boolean skipFunctionBodies;
+
+    /**
+     * The setting of the outline only import, as last given by
+     * {@link #getImportSettings()}, or null if these weren't asked for.
+     */
+    private Setting.BooleanSelection outlineSetting;
+
+    /**
+     * Whether only the declarations are parsed, the initializers, default
+     * arguments and other expressions being skipped as the function bodies.
+     */
+    private boolean outline;
+
+    /**
+     * Whether the parser memoizes the outcomes of its rules while guessing.
+     */
+    private boolean memoizeGuesses;
+
+    /**
+     * The number of times the parsers didn't parse a rule again while
+     * guessing.
+     */
+    private final AtomicInteger savedGuesses = new AtomicInteger();
+
+    /**
+     * The type names, with their kinds, declared by the translation units
+     * parsed in this import, or null if these aren't shared.
+     */
+    private Map<String, String> learnedSymbols;
+
+    /**
+     * The directories of the system headers.
+     */
+    private List<String> systemIncludes;
+
+    /**
+     * The index of the model into which the files are imported.
+     */
+    private ModelIndex modelIndex;
+
+    /**
+     * The modeler of this import, which is reused for all the files, so that
+     * its C++ profile and caches are set up only once.
+     */
+    private Modeler modeler;
     
     /**
      * Default constructor.
@@ -120,54 +279,376 @@ public class CppImport implements ImportInterface {
         warnUser(monitor);
 
         newElements = new HashSet();
-        monitor.setMaximumProgress(files.size());
-        int count = 1;
+        List<File> fileList = new ArrayList<File>();
         for (Iterator it = files.iterator(); it.hasNext();) {
             Object file = it.next();
             if (!(file instanceof File)) {
                 throw new ImportException("Invalid argument - not a file: "
                         + file);
             }
-            parseFile(p, (File) file, settings);
-            monitor.updateProgress(count++);
+            fileList.add((File) file);
+        }
+        List<CompileCommand> units = getCompileCommands(fileList);
+        monitor.setMaximumProgress(units.size());
+        systemIncludes = getSystemIncludes();
+        manifest = null;
+        if (Configuration.getBoolean(KEY_IMPORT_INCREMENTAL, false)) {
+            manifest = new ImportManifest(ModelerImpl.getEditableModel(p));
+        }
+        headerCache = null;
+        if (Configuration.getBoolean(KEY_IMPORT_HEADER_CACHE, false)) {
+            headerCache = new HeaderCache(systemIncludes);
+        }
+        skipFunctionBodies = Configuration.getBoolean(KEY_IMPORT_SKIP_BODIES,
+            false);
+        outline = outlineSetting != null && outlineSetting.isSelected();
+        memoizeGuesses = Configuration.getBoolean(KEY_IMPORT_MEMOIZE, false);
+        savedGuesses.set(0);
+        int threads = Configuration.getInteger(KEY_IMPORT_THREADS, 1);
+        boolean parallel = threads > 1 && units.size() > 1;
+        learnedSymbols = null;
+        if (Configuration.getBoolean(KEY_IMPORT_SHARE_SYMBOLS, false)) {
+            if (parallel) {
+                LOG.fine("Not sharing the symbols of the translation units,"
+                    + " which are parsed in parallel.");
+            } else {
+                learnedSymbols = new HashMap<String, String>();
+            }
+        }
+        modelIndex = new ModelIndex(ModelerImpl.getEditableModel(p));
+        modeler = createModeler(p);
+        try {
+            if (parallel) {
+                parseFilesInParallel(units, threads, monitor);
+            } else {
+                int count = 1;
+                for (CompileCommand unit : units) {
+                    parseFile(unit);
+                    monitor.updateProgress(count++);
+                }
+            }
+            if (manifest != null) {
+                manifest.store();
+            }
+        } finally {
+            // the modeler and its index aren't valid for later imports
+            modeler = null;
+            learnedSymbols = null;
+            modelIndex = null;
+        }
+        if (headerCache != null) {
+            LOG.fine("Header expansions reused " + headerCache.getHits()
+                + " times, made " + headerCache.getMisses() + " times.");
+        }
+        if (memoizeGuesses) {
+            LOG.fine("Memoized parser rules saved " + savedGuesses.get()
+                + " guesses.");
         }
         return newElements;
     }
 
+    /**
+     * Get the compile commands of the files to import. Without a compilation
+     * database, these are all the files, without preprocessor options.
+     * Otherwise, these are the files in the database, grouped by their
+     * include directories.
+     *
+     * @param files the files selected for import
+     * @return the compile commands of the translation units to parse
+     * @throws ImportException if the compilation database can't be read
+     */
+    static List<CompileCommand> getCompileCommands(List<File> files)
+        throws ImportException {
+        List<CompileCommand> units = new ArrayList<CompileCommand>();
+        String database = Configuration.getString(
+            KEY_IMPORT_COMPILATION_DATABASE, "").trim();
+        if (database.length() == 0) {
+            for (File file : files) {
+                units.add(new CompileCommand(file));
+            }
+            return units;
+        }
+        try {
+            CompilationDatabase commands = new CompilationDatabase(
+                new File(database));
+            Set<CompileCommand> selected = new HashSet<CompileCommand>();
+            for (File file : files) {
+                CompileCommand command = commands.getCommand(file);
+                if (command == null) {
+                    LOG.fine("Not importing " + file
+                        + ", which isn't in the compilation database.");
+                } else {
+                    selected.add(command);
+                }
+            }
+            // the units with the same include directories share most of
+            // their header expansions
+            Map<String, List<CompileCommand>> groups =
+                new LinkedHashMap<String, List<CompileCommand>>();
+            for (CompileCommand command : commands.getCommands()) {
+                if (selected.contains(command)) {
+                    List<CompileCommand> group = groups.get(
+                        command.getIncludeKey());
+                    if (group == null) {
+                        group = new ArrayList<CompileCommand>();
+                        groups.put(command.getIncludeKey(), group);
+                    }
+                    group.add(command);
+                }
+            }
+            for (List<CompileCommand> group : groups.values()) {
+                units.addAll(group);
+            }
+        } catch (IOException e) {
+            throw new ImportException("Error reading compilation database "
+                + database, e);
+        }
+        if (units.isEmpty() && !files.isEmpty()) {
+            LOG.warning("None of the files is in the compilation database "
+                + database);
+        }
+        return units;
+    }
+
     /*
      * Parse a single file
      */
-    private void parseFile(Project p, File f, ImportSettings settings)
+    private void parseFile(CompileCommand unit) throws ImportException {
+        if (parse(unit, modeler)) {
+            newElements.addAll(modeler.getNewElements());
+        }
+    }
+
+    /**
+     * Parse the files in a pool of worker threads. Each worker records the
+     * calls of its parser into a {@link ModelerRecorder}, which are then
+     * replayed in the calling thread, in the order of the files, so that the
+     * resulting model is the same as the one of a sequential import.
+     *
+     * @param units the compile commands of the files to import
+     * @param threads the number of worker threads
+     * @param monitor the monitor to which progress is reported
+     * @throws ImportException if a file can't be read or parsed
+     */
+    private void parseFilesInParallel(List<CompileCommand> units,
+            int threads, ProgressMonitor monitor) throws ImportException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // bound the number of recordings held in memory
+            int window = threads * 2;
+            LinkedList<Future<ParseTask>> pending =
+                new LinkedList<Future<ParseTask>>();
+            Iterator<CompileCommand> toSubmit = units.iterator();
+            int count = 1;
+            while (toSubmit.hasNext() || !pending.isEmpty()) {
+                while (pending.size() < window && toSubmit.hasNext()) {
+                    pending.add(executor.submit(
+                        new ParseTask(toSubmit.next())));
+                }
+                ParseTask task = waitFor(pending.removeFirst());
+                if (task.recorder.size() > 0) {
+                    task.recorder.replay(modeler);
+                    if (task.error != null) {
+                        throw task.error;
+                    }
+                    newElements.addAll(modeler.getNewElements());
+                } else if (task.error != null) {
+                    throw task.error;
+                }
+                monitor.updateProgress(count++);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ParseTask waitFor(Future<ParseTask> future)
         throws ImportException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImportException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            throw new ImportException("Error parsing", e.getCause());
+        }
+    }
+
+    /**
+     * Parses a file in a worker thread, recording the modeler calls.
+     */
+    private class ParseTask implements Callable<ParseTask> {
+
+        private final CompileCommand unit;
+
+        private final ModelerRecorder recorder = new ModelerRecorder();
+
+        /**
+         * Set if the parsing failed. The calls recorded until the failure
+         * are still replayed, as it would happen in a sequential import.
+         */
+        private ImportException error;
+
+        ParseTask(CompileCommand theUnit) {
+            unit = theUnit;
+        }
+
+        public ParseTask call() {
+            try {
+                parse(unit, recorder.getModeler());
+            } catch (ImportException e) {
+                error = e;
+            }
+            return this;
+        }
+    }
 
-        Reader fileReader;
+    /**
+     * Preprocess, lex and parse a file, calling the given modeler. The
+     * settings of the import session - manifest, header cache, outline and
+     * skipping of function bodies - are applied. Files which are already
+     * preprocessed are fed directly to the lexer.
+     *
+     * @param unit the compile command of the file to parse
+     * @param modeler the modeler called by the parser
+     * @return false if the file wasn't parsed because it didn't change since
+     *         it was last imported
+     * @throws ImportException if the file can't be read or parsed
+     */
+    private boolean parse(CompileCommand unit, Modeler modeler)
+        throws ImportException {
+        File f = unit.getFile();
+        // the lexer reads directly from the source text when it is in
+        // memory - mapped or preprocessed with the header cache - and from
+        // the preprocessor otherwise
+        CharSequence source = null;
+        Reader fileReader = null;
         Preprocessor preprocessor;
         try {
-            preprocessor = new Preprocessor(f); // Create a new preprocessor 
-                                                // for the input file.
-            fileReader = new CppReader(preprocessor);
+            if (isPreprocessed(f)) {
+                source = MappedCharSequence.map(f);
+            } else if (headerCache != null) {
+                source = headerCache.preprocess(unit);
+            } else {
+                preprocessor = new Preprocessor(f); // Create a new 
+                                                    // preprocessor for the 
+                                                    // input file.
+                unit.configure(preprocessor, systemIncludes);
+                fileReader = new CppReader(preprocessor);
+            }
         } catch (IOException e) {
             throw new ImportException("Error opening file " + f, e);
+        } catch (LexerException e) {
+            throw new ImportException("Error parsing " + f, e);
         }
         try {
-            Modeler modeler = createModeler(p);
-            CPPLexer lexer = new CPPLexer(fileReader);
-            CPPParser parser = new CPPParser(lexer);
+            CPPLexer lexer = source != null
+                ? new CPPLexer(new CharSequenceInputBuffer(source))
+                : new CPPLexer(fileReader);
+            lexer.setFilename(f.getPath());
             try {
-                parser.translation_unit(modeler);
+                if (manifest == null) {
+                    parse(new CompactTokenStream(lexer), unit, modeler);
+                    return true;
+                }
+                DigestingTokenStream tokens = new DigestingTokenStream(lexer);
+                if (manifest.isUnchanged(f, tokens.getDigest())) {
+                    LOG.fine("Skipping unchanged translation unit " + f);
+                    return false;
+                }
+                parse(tokens, unit, modeler);
+                // an outline doesn't replace a full import of the unit,
+                // which must still be done when asked for
+                if (!outline) {
+                    manifest.update(f, tokens.getDigest());
+                }
+                return true;
             } catch (Exception e) {
                 throw new ImportException("Error parsing " + f, e);
             }
-            newElements.addAll(modeler.getNewElements());
         } finally {
             try {
-		fileReader.close();
+                if (fileReader != null) {
+                    fileReader.close();
+                }
             } catch (IOException e) {
                 LOG.severe("Error on closing file " + f + " " + e);
             }
         }
     }
     
+    /**
+     * Check if a file was already preprocessed, either because it has the
+     * suffix of preprocessed files or because its only directives are line
+     * markers and pragmas.
+     *
+     * @param f the file to check
+     * @return true if f doesn't need to be preprocessed
+     * @throws IOException if f can't be read
+     */
+    static boolean isPreprocessed(File f) throws IOException {
+        if (FileImportUtils.matchesSuffix(f, PREPROCESSED_SUFFIX_FILTERS)) {
+            return true;
+        }
+        boolean hasLineMarkers = false;
+        BufferedReader reader = new BufferedReader(new FileReader(f));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("#")) {
+                    String directive = line.substring(1).trim();
+                    if (directive.startsWith("line") || (directive.length() > 0
+                        && Character.isDigit(directive.charAt(0)))) {
+                        hasLineMarkers = true;
+                    } else if (!directive.startsWith("pragma")) {
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return hasLineMarkers;
+    }
+
+    /**
+     * @return the directories of the system headers, as configured
+     */
+    static List<String> getSystemIncludes() {
+        List<String> directories = new ArrayList<String>();
+        String path = Configuration.getString(KEY_IMPORT_SYSTEM_INCLUDES, "");
+        for (String directory : path.split(File.pathSeparator)) {
+            if (directory.trim().length() > 0) {
+                directories.add(directory.trim());
+            }
+        }
+        return directories;
+    }
+
+    private void parse(TokenStream tokens, CompileCommand unit,
+            Modeler modeler)
+        throws RecognitionException, TokenStreamException {
+        CPPParser parser = new CPPParser(tokens);
+        parser.setSkipFunctionBodies(skipFunctionBodies);
+        parser.setOutline(outline);
+        parser.setSystemIncludeRoots(unit.getSystemRoots(systemIncludes));
+        parser.setMemoizeGuesses(memoizeGuesses);
+        if (learnedSymbols != null) {
+            parser.declareSymbols(learnedSymbols);
+        }
+        parser.translation_unit(modeler);
+        savedGuesses.addAndGet(parser.getSavedGuesses());
+        if (learnedSymbols != null) {
+            for (Map.Entry<String, String> symbol
+                    : parser.getDeclaredSymbols().entrySet()) {
+                if (!learnedSymbols.containsKey(symbol.getKey())) {
+                    learnedSymbols.put(symbol.getKey(), symbol.getValue());
+                }
+            }
+        }
+    }
+
     private static class ModelerInvocationHandler implements InvocationHandler {
 
         static final Logger LOG = Logger.getLogger(Modeler.class.getName());
@@ -205,7 +686,7 @@ public class CppImport implements ImportInterface {
     
     private Modeler createModeler(Project p) throws ImportException {
         try {
-            Modeler modeler = new ModelerImpl(p);
+            Modeler modeler = new ModelerImpl(p, modelIndex);
             if (LOG.isLoggable(Level.FINE)) {
                 InvocationHandler handler = new ModelerInvocationHandler(
                     modeler);
@@ -267,7 +748,16 @@ public class CppImport implements ImportInterface {
         new SuffixFilter("c++", "C++ source files"),
         new SuffixFilter("C++", "C++ source files"),
         new SuffixFilter("CPP", "C++ source files"),
-        new SuffixFilter("cpp", "C++ source files"), };
+        new SuffixFilter("cpp", "C++ source files"),
+        new SuffixFilter("i", "Preprocessed C++ source files"),
+        new SuffixFilter("ii", "Preprocessed C++ source files"), };
+
+    /*
+     * The suffix filters for the files which are already preprocessed.
+     */
+    private static final SuffixFilter[] PREPROCESSED_SUFFIX_FILTERS = {
+        new SuffixFilter("i", "Preprocessed C++ source files"),
+        new SuffixFilter("ii", "Preprocessed C++ source files"), };
 
     /*
      * @see org.argouml.uml.reveng.ImportInterface#getSuffixFilters()
@@ -324,7 +814,14 @@ public class CppImport implements ImportInterface {
     /*
      * @see org.argouml.uml.reveng.ImportInterface#getImportSettings()
      */
-    public List getImportSettings() {
-        return null;
+    public List<SettingsTypes.Setting> getImportSettings() {
+        List<SettingsTypes.Setting> settings =
+            new ArrayList<SettingsTypes.Setting>();
+        outlineSetting = new Setting.BooleanSelection(
+            "Outline only - namespaces, classes, inheritance and member "
+            + "signatures, skipping function bodies and initializers",
+            false);
+        settings.add(outlineSetting);
+        return settings;
     }
 }
@@ -98,7 +98,6 @@ header
 package org.argouml.language.cpp.reveng;
 /*REMOVE_END*/
 
-import java.util.Hashtable;
 import java.util.List;
 import java.util.ArrayList;
 }
@@ -122,15 +121,406 @@ options
 	
 	String enclosingClass="";//name of current class
 	boolean _td=false; // is type declaration?
-	Hashtable symbols=new Hashtable();
+	SymbolTable symbols=new SymbolTable(); // the type names
+	boolean skipFunctionBodies=false; // match the braces of function bodies only?
+	boolean outline=false; // match the tokens of expressions only?
+	SystemHeaders systemHeaders; // which declarations aren't modeled, if any
+	RuleMemo ruleMemo; // memo of the rules while guessing, if any
+	int tdClearings=0; // times _td was cleared, even while guessing
 	
+	/*
+	 * When true, the statements in the bodies of functions, constructors 
+	 * and destructors aren't parsed, the tokens being skipped up to the 
+	 * matching right curly brace. The definitions are still reported to 
+	 * the modeler, but, with empty compound statements.
+	 */
+	public void setSkipFunctionBodies(boolean skip)
+	{
+		skipFunctionBodies = skip;
+	}
+	
+	/*
+	 * When true, only the declarations are parsed: besides skipping the 
+	 * function bodies, the tokens of the initializers, default arguments, 
+	 * enumerator values, array bounds and other expressions outside of 
+	 * the bodies are skipped up to the end of each expression, without 
+	 * parsing them. The modeler is called as when the expressions are 
+	 * parsed, except for the type names in them, e.g., of casts.
+	 */
+	public void setOutline(boolean outlineOnly)
+	{
+		outline = outlineOnly;
+	}
+	
+	/*
+	 * The declarations read from the headers within the given directories, 
+	 * as told by the line markers of the input, aren't given to the 
+	 * modeler. Their type names are still declared, but, only their 
+	 * outline is parsed.
+	 */
+	public void setSystemIncludeRoots(java.util.List<String> roots)
+	{
+		systemHeaders = roots.isEmpty() ? null : new SystemHeaders(roots);
+	}
+	
+	/*
+	 * Declare type names learned elsewhere, e.g., from the translation 
+	 * units previously parsed in the same import, so that they are known 
+	 * from the start of the translation unit.
+	 */
+	public void declareSymbols(java.util.Map<String, String> learned)
+	{
+		for (java.util.Map.Entry<String, String> symbol : learned.entrySet())
+		{
+			if (!symbols.containsKey(symbol.getKey()))
+				symbols.put(symbol.getKey(), symbol.getValue());
+		}
+	}
+	
+	/**
+	 * @return the type names declared in the outermost scope of the 
+	 * translation unit, by name
+	 */
+	public java.util.Map<String, String> getDeclaredSymbols()
+	{
+		return symbols.getOutermostSymbols();
+	}
+	
+	/*
+	 * When true, the outcomes of the rules with which the syntactic 
+	 * predicates start are memoized while guessing, so that the next 
+	 * guesses at the same token don't parse them again. Like the 
+	 * lookahead memos below, it is only used when the tokens come from a 
+	 * CompactTokenStream.
+	 */
+	public void setMemoizeGuesses(boolean memoize)
+	{
+		ruleMemo = memoize ? new RuleMemo() : null;
+	}
+	
+	/**
+	 * @return the number of times that a rule wasn't parsed again while 
+	 * guessing because its outcome was memoized
+	 */
+	public int getSavedGuesses()
+	{
+		return ruleMemo == null ? 0 : ruleMemo.getHits();
+	}
+	
+	// the memoized rules
+	private static final int MEMO_DECLARATION = 0;
+	private static final int MEMO_DECLARATION_SPECIFIERS = 1;
+	private static final int MEMO_SIMPLE_TYPE_SPECIFIER = 2;
+	private static final int MEMO_CLASS_HEAD = 3;
+	private static final int MEMO_QUALIFIED_ID = 4;
+	private static final int MEMO_DECLARATOR = 5;
+	private static final int MEMO_FUNCTION_DECLARATOR = 6;
+	private static final int MEMO_CONVERSION_FUNCTION = 7;
+	private static final int MEMO_CTOR_DECL_SPEC = 8;
+	private static final int MEMO_DTOR_HEAD = 9;
+	private static final int MEMO_POSTFIX_EXPRESSION = 10;
+	
+	/*
+	 * Called at the start of a memoized rule. Returns true if the rule 
+	 * succeeded before at this token, in which case its tokens were 
+	 * consumed and the rule must return, and throws if it failed.
+	 */
+	private boolean memoizedRule(int rule) throws RecognitionException, TokenStreamException
+	{
+		if (ruleMemo == null || inputState.guessing == 0)
+			return false;
+		int index = tokenIndex(1);
+		if (index < 0)
+			return false;
+		checkMemoGeneration();
+		RuleMemo.Outcome outcome = ruleMemo.get(rule, index);
+		if (outcome == null)
+		{
+			ruleMemo.start(rule, index, tdClearings);
+			return false;
+		}
+		if (outcome.clearsTypeDeclaration())
+		{
+			_td = false;
+			tdClearings++;
+		}
+		if (outcome.getEnd() == RuleMemo.FAILED)
+			throw new NoViableAltException(LT(1), getFilename());
+		while (tokenIndex(1) < outcome.getEnd())
+			consume();
+		return true;
+	}
+	
+	/*
+	 * Validating predicate at the end of a memoized rule, which is also 
+	 * evaluated while guessing.
+	 */
+	private boolean memoizeRule() throws TokenStreamException
+	{
+		if (ruleMemo != null && inputState.guessing > 0)
+		{
+			int index = tokenIndex(1);
+			if (index >= 0)
+				ruleMemo.end(index, tdClearings);
+		}
+		return true;
+	}
+	
+	/*
+	 * The tokens of a CompactTokenStream are looked at by their index in 
+	 * it, instead of through the token buffer, so that no token object is 
+	 * created for the parser to look ahead at their types.
+	 */
+	private final CompactTokenStream compactTokens = 
+		inputState.getInput().getInput() instanceof CompactTokenStream 
+		? (CompactTokenStream) inputState.getInput().getInput() : null;
+	private int position; // the index of LT(1) in compactTokens
+	
+	public int LA(int i) throws TokenStreamException
+	{
+		if (compactTokens == null)
+			return super.LA(i);
+		return compactTokens.getType(Math.min(position + i - 1, compactTokens.size() - 1));
+	}
+	
+	public Token LT(int i) throws TokenStreamException
+	{
+		if (compactTokens == null)
+			return super.LT(i);
+		return compactTokens.getToken(position + i - 1);
+	}
+	
+	public void consume() throws TokenStreamException
+	{
+		if (compactTokens == null)
+			super.consume();
+		else if (position < compactTokens.size() - 1)
+			position++;
+	}
+	
+	/*
+	 * A guess which fails is only rewound, so, while guessing, the tokens 
+	 * which don't match throw the same exception, instead of a new one 
+	 * with its stack trace each time.
+	 */
+	private static final MismatchedTokenException GUESS_MISMATCH = 
+		new MismatchedTokenException();
+	
+	public void match(int t) throws MismatchedTokenException, TokenStreamException
+	{
+		if (inputState.guessing > 0 && LA(1) != t)
+			throw GUESS_MISMATCH;
+		super.match(t);
+	}
+	
+	public void match(antlr.collections.impl.BitSet b) throws MismatchedTokenException, TokenStreamException
+	{
+		if (inputState.guessing > 0 && !b.member(LA(1)))
+			throw GUESS_MISMATCH;
+		super.match(b);
+	}
+	
+	public void matchNot(int t) throws MismatchedTokenException, TokenStreamException
+	{
+		if (inputState.guessing > 0 && LA(1) == t)
+			throw GUESS_MISMATCH;
+		super.matchNot(t);
+	}
+	
+	// the scopes depth and the rule memo mark, by guess
+	private final List<int[]> guessMarks = new ArrayList<int[]>();
+	
+	public int mark()
+	{
+		guessMarks.add(new int[] {symbols.getDepth(), ruleMemo == null ? 0 : ruleMemo.mark()});
+		return compactTokens == null ? super.mark() : position;
+	}
+	
+	public void rewind(int mark)
+	{
+		if (compactTokens == null)
+			super.rewind(mark);
+		else
+			position = mark;
+		int[] guessMark = guessMarks.remove(guessMarks.size() - 1);
+		// forget the template parameters declared while guessing
+		symbols.exitScopes(guessMark[0]);
+		if (ruleMemo != null)
+			ruleMemo.rewind(guessMark[1], tdClearings);
+	}
+	
+	/*
+	 * Called at the start of an external declaration, even while guessing. 
+	 * If the declaration comes from a system header, it is parsed as an 
+	 * outline and ignored by the modeler, up to exitSystemHeader.
+	 */
+	private void enterSystemHeader() throws TokenStreamException
+	{
+		if (systemHeaders == null || inputState.guessing > 0)
+			return;
+		Token t = LT(1);
+		if (t instanceof CPPToken 
+			&& systemHeaders.contains(((CPPToken) t).getFilename()))
+		{
+			m = SystemHeaders.IGNORING_MODELER;
+			setOutlineWhileGuessing(true);
+		}
+	}
+	
+	private void exitSystemHeader(Modeler modeler, boolean wasOutline)
+	{
+		m = modeler;
+		setOutlineWhileGuessing(wasOutline);
+	}
+	
+	private void setOutlineWhileGuessing(boolean outlineOnly)
+	{
+		// the memoized guesses were parsed with the other setting
+		if (outline != outlineOnly && ruleMemo != null)
+			ruleMemo.clear();
+		outline = outlineOnly;
+	}
+	
+	/*
+	 * Validating predicate of skipped_expression, which is also evaluated 
+	 * while guessing. Consumes the template argument list in LT(1), if 
+	 * any, which must end before the end of the statement, so that its 
+	 * commas don't end the skipped expression. The "<" only opens a 
+	 * template argument list after the name of a template, otherwise, it 
+	 * is the less than operator, as in "f(bool x = a < b, int y = c > d)".
+	 */
+	private boolean skipTemplateArguments(String id) throws TokenStreamException
+	{
+		if (LA(1) != LESSTHAN || !isTemplateName(id))
+			return true;
+		int end = skipTemplateQualifiers(1);
+		for (int k = 2; k < end; k++)
+		{
+			int type = LA(k);
+			if (type == SEMICOLON || type == LCURLY || type == RCURLY)
+				return true;
+		}
+		while (end-- > 1)
+			consume();
+		return true;
+	}
+	
+	// the precedences of the binary operators, from the loosest binding
+	private static final int PREC_LOGICAL_OR = 1;
+	private static final int PREC_LOGICAL_AND = 2;
+	private static final int PREC_INCLUSIVE_OR = 3;
+	private static final int PREC_EXCLUSIVE_OR = 4;
+	private static final int PREC_AND = 5;
+	private static final int PREC_EQUALITY = 6;
+	private static final int PREC_RELATIONAL = 7;
+	private static final int PREC_SHIFT = 8;
+	private static final int PREC_ADDITIVE = 9;
+	private static final int PREC_MULTIPLICATIVE = 10;
+	private static final int PREC_PM = 11;
+	
+	/*
+	 * Returns the precedence of the binary operator of the given token type, 
+	 * or 0 if it isn't a binary operator.
+	 */
+	private static int binaryPrecedence(int type)
+	{
+		switch (type)
+		{
+		case OR:
+			return PREC_LOGICAL_OR;
+		case AND:
+			return PREC_LOGICAL_AND;
+		case BITWISEOR:
+			return PREC_INCLUSIVE_OR;
+		case BITWISEXOR:
+			return PREC_EXCLUSIVE_OR;
+		case AMPERSAND:
+			return PREC_AND;
+		case NOTEQUAL:
+		case EQUAL:
+			return PREC_EQUALITY;
+		case LESSTHAN:
+		case GREATERTHAN:
+		case LESSTHANOREQUALTO:
+		case GREATERTHANOREQUALTO:
+			return PREC_RELATIONAL;
+		case SHIFTLEFT:
+		case SHIFTRIGHT:
+			return PREC_SHIFT;
+		case PLUS:
+		case MINUS:
+			return PREC_ADDITIVE;
+		case STAR:
+		case DIVIDE:
+		case MOD:
+			return PREC_MULTIPLICATIVE;
+		case DOTMBR:
+		case POINTERTOMBR:
+			return PREC_PM;
+		default:
+			return 0;
+		}
+	}
+	
+	
+	/*
+	 * Memos of qualifiedItemIs and skipTemplateQualifiers by the index of the 
+	 * first token scanned, which avoid scanning the same tokens for each 
+	 * predicate and for each syntactic predicate guess. They are only used 
+	 * when the tokens come from a CompactTokenStream, which gives the 
+	 * index of each token.
+	 * The result of qualifiedItemIs depends on the declared types and on 
+	 * the enclosing class, which only change in actions, therefore, never 
+	 * while guessing. A memoized result is valid for the guesses and for 
+	 * the actual parse, up to the next change, which starts a new 
+	 * generation of the memo.
+	 * The end of a template argument list depends on the tokens only, but, 
+	 * the scan is limited relative to LT(1), so, when it fails, the limit 
+	 * is memoized too.
+	 */
+	private java.util.BitSet[] qualifiedItems = new java.util.BitSet[0];
+	private int[] qualifiedItemGenerations = new int[0];
+	private int memoGeneration = 1;
+	private int memoSymbols = -1;
+	private String memoEnclosingClass = "";
+	// 0 unknown, > 0 index after ">", -1 no ">", < -1 not found up to -end - 2
+	private int[] templateEnds = new int[0];
+	private boolean templateScanLimited;
+	private int lookaheadMemoHits;
+	
+	/**
+	 * @return the number of qualifiedItemIs and skipTemplateQualifiers 
+	 * calls which were answered by the memo
+	 */
+	public int getLookaheadMemoHits()
+	{
+		return lookaheadMemoHits;
+	}
+	
+	private void checkMemoGeneration()
+	{
+		if (symbols.getVersion() != memoSymbols || !enclosingClass.equals(memoEnclosingClass))
+		{	// the type names or the enclosing class changed
+			memoGeneration++;
+			memoSymbols = symbols.getVersion();
+			memoEnclosingClass = enclosingClass;
+			if (ruleMemo != null)
+				ruleMemo.clear();
+		}
+	}
+	
+	private int tokenIndex(int k) throws TokenStreamException
+	{
+		if (compactTokens != null)
+			return Math.min(position + k - 1, compactTokens.size() - 1);
+		Token t = LT(k);
+		return t instanceof CPPToken ? ((CPPToken) t).getIndex() : -1;
+	}
 	
 	public boolean qualifiedItemIsOneOf(java.util.BitSet  qiFlags, int lookahead_offset) throws TokenStreamException
 	{	 
 	  java.util.BitSet qi = qualifiedItemIs(lookahead_offset);
-	  java.util.BitSet aux=(java.util.BitSet) qi.clone();	
-		aux.and(qiFlags);
-		return (!aux.isEmpty()); 
+		return qi.intersects(qiFlags); 
 	}
 	
 	
@@ -162,6 +552,34 @@ options
 	// ::~T, ~T, A::~T yield QI_DTOR
 	// ~a, ~A::a, A::~T::, ~T:: yield QI_INVALID
 	public java.util.BitSet qualifiedItemIs(int lookahead_offset) throws TokenStreamException
+	{
+		int index = tokenIndex(lookahead_offset + 1);
+		if (index < 0)
+			return scanQualifiedItem(lookahead_offset);
+		checkMemoGeneration();
+		if (index >= qualifiedItems.length)
+		{
+			int length = Math.max(index + 1, 2 * qualifiedItems.length);
+			java.util.BitSet[] items = new java.util.BitSet[length];
+			System.arraycopy(qualifiedItems, 0, items, 0, qualifiedItems.length);
+			qualifiedItems = items;
+			int[] generations = new int[length];
+			System.arraycopy(qualifiedItemGenerations, 0, generations, 0, 
+				qualifiedItemGenerations.length);
+			qualifiedItemGenerations = generations;
+		}
+		if (qualifiedItemGenerations[index] == memoGeneration)
+		{
+			lookaheadMemoHits++;
+			return qualifiedItems[index];
+		}
+		java.util.BitSet qi = scanQualifiedItem(lookahead_offset);
+		qualifiedItems[index] = qi;
+		qualifiedItemGenerations[index] = memoGeneration;
+		return qi;
+	}
+	
+	private java.util.BitSet scanQualifiedItem(int lookahead_offset) throws TokenStreamException
 	{
 		int value;
 		int k = lookahead_offset + 1;
@@ -311,6 +729,46 @@ options
 	//                kInOut is unchanged
 
 	public int skipTemplateQualifiers(int kInOut)  throws TokenStreamException
+	{
+		int start = tokenIndex(kInOut);
+		if (start < 0)
+			return scanTemplateQualifiers(kInOut);
+		// the scan is limited to MAX_TEMPLATE_TOKEN_SCAN tokens of lookahead
+		int limit = start - kInOut + CPPvariables.MAX_TEMPLATE_TOKEN_SCAN;
+		if (start >= templateEnds.length)
+		{
+			int[] ends = new int[Math.max(start + 1, 2 * templateEnds.length)];
+			System.arraycopy(templateEnds, 0, ends, 0, templateEnds.length);
+			templateEnds = ends;
+		}
+		int end = templateEnds[start];
+		if (end > 0)
+		{
+			lookaheadMemoHits++;
+			// the last token checked against the limit is the ">"
+			if (end == start + 2 || end - 1 <= limit)
+				return kInOut + end - start;
+			templateScanLimited = true;
+			return kInOut;
+		}
+		if (end == -1 || (end < -1 && limit <= -end - 2))
+		{
+			lookaheadMemoHits++;
+			templateScanLimited = end < -1;
+			return kInOut;
+		}
+		templateScanLimited = false;
+		int k = scanTemplateQualifiers(kInOut);
+		if (k != kInOut)
+			templateEnds[start] = start + k - kInOut;
+		else if (templateScanLimited)
+			templateEnds[start] = -limit - 2;
+		else
+			templateEnds[start] = -1;
+		return k;
+	}
+	
+	private int scanTemplateQualifiers(int kInOut)  throws TokenStreamException
 	{
 		// Start after "<"
 		int k = kInOut + 1;
@@ -345,6 +803,7 @@ options
 			}
 			if (k > CPPvariables.MAX_TEMPLATE_TOKEN_SCAN)
 			{
+				templateScanLimited = true;
 				return kInOut;
 			}
 		}
@@ -388,6 +847,7 @@ options
 			}
 			if (k > CPPvariables.MAX_TEMPLATE_TOKEN_SCAN)
 			{
+				templateScanLimited = true;
 				return kInOut;
 			}
 		}
@@ -455,6 +915,33 @@ options
 		return false;
 	}
 	
+	/*
+	 * Return true if 's' can be followed by a template argument list, i.e., 
+	 * if it is a type name or the name of a function template
+	 */
+	private boolean isTemplateName(String s)
+	{
+		return isTypeName(s) 
+			|| CPPvariables.OT_FUNCTION_TEMPLATE.equals(symbols.get(s));
+	}
+	
+	/*
+	 * The template parameters and their scopes are handled in validating 
+	 * predicates, so that they are declared even while guessing.
+	 */
+	private boolean declareTemplateParameter(String id)
+	{
+		if (!symbols.containsKey(id))
+			symbols.putTemplateParameter(id, CPPvariables.OT_TYPE_DEF);
+		return true;
+	}
+	
+	private boolean exitScopes(int depth)
+	{
+		symbols.exitScopes(depth);
+		return true;
+	}
+	
 	public void declaratorID(String id, java.util.BitSet qi)
 	{
 		if ((qi.equals(CPPvariables.QI_TYPE)) || (_td))	// Check for type declaration
@@ -462,6 +949,12 @@ options
 			if (!symbols.containsKey(id))
 				symbols.put(id, CPPvariables.OT_TYPE_DEF);
 		}
+		else if (qi.equals(CPPvariables.QI_FUN) && symbols.isInTemplateScope())
+		{
+			// the function template may be called with template arguments
+			if (!symbols.containsKey(id))
+				symbols.put(id, CPPvariables.OT_FUNCTION_TEMPLATE);
+		}
 	}
 }
 
@@ -479,7 +972,11 @@ translation_unit [Modeler modeler]
    
    
 external_declaration
-	{String s="";}
+	{
+	String s=""; int depth=symbols.getDepth(); 
+	Modeler modeler=m; boolean wasOutline=outline; 
+	enterSystemHeader();
+	}
 	:  
 	(
 	// Template explicit specialisation (DW 14/04/03)
@@ -556,6 +1053,8 @@ external_declaration
 	|	
 		SEMICOLON 
 	)
+	{exitScopes(depth)}? // of the template parameters, if any
+	{exitSystemHeader(modeler, wasOutline);}
 	;	// end of external_declaration
 
 decl_namespace
@@ -583,7 +1082,7 @@ decl_namespace
 	;
 
 member_declaration
-	{String q="";}
+	{String q=""; int depth=symbols.getDepth();}
 	:
 	{m.beginMemberDeclaration();}
 	(
@@ -650,7 +1149,7 @@ member_declaration
   		(function_declarator SEMICOLON)=> function_declarator SEMICOLON 
 	
 	|   // Member without a type (I guess it can only be a function definition)
-        function_declarator compound_statement
+        function_declarator function_body
 
    |  
 		// templated forward class decl, init/decl of static member in template
@@ -681,6 +1180,7 @@ member_declaration
 	|  
 		SEMICOLON 
 	)
+	{exitScopes(depth)}? // of the template parameters, if any
 	{m.endMemberDeclaration();}
 	;	// end member_declaration
 
@@ -694,25 +1194,28 @@ function_definition
 		declaration_specifiers function_declarator
 		(	options{warnWhenFollowAmbig = false;}:
 			(declaration)*	// Possible for K & R definition
-		)?  compound_statement
+		)?  function_body
 	|	// Next line is equivalent to guarded predicate in PCCTS
 		// (SCOPE | ID)? => <<qualifiedItemisOneOf(QI_PTR_MEMBER)>>?
 		//{( !(LA(1)==SCOPE||LA(1)==ID) || (qualifiedItemIsOneOf(QI_PTR_MEMBER)) )}?
 		function_declarator
 		(	options{warnWhenFollowAmbig = false;}:
 			(declaration)*	// Possible for K & R definition
-		)? compound_statement
+		)? function_body
 	)
 	;
 
 declaration
+	{if (memoizedRule(MEMO_DECLARATION)) return;}
 	:	
-		("extern" StringLiteral)=> linkage_specification
+	(	("extern" StringLiteral)=> linkage_specification
 	|	
 		// LL 31/1/97: added (COMMA) ? below. This allows variables to typedef'ed more than once. DW 18/08/03 ?
 		declaration_specifiers ((COMMA)? init_declarator_list)? SEMICOLON 
 	|	
 		using_declaration	// DW 19/04/04
+	)
+	{memoizeRule()}?
 	;
 
 linkage_specification
@@ -724,7 +1227,8 @@ linkage_specification
 	;
 
 declaration_specifiers
-	{_td=false; boolean td=false; List declSpecs = new ArrayList();}
+	{_td=false; tdClearings++; boolean td=false; List declSpecs = new ArrayList();
+	if (memoizedRule(MEMO_DECLARATION_SPECIFIERS)) return;}
 	:
 	(	(options {warnWhenFollowAmbig = false;}
 		: storage_class_specifier
@@ -742,6 +1246,7 @@ declaration_specifiers
 		"typename"	{td=true;} direct_declarator 
 	)
 	{_td=td;}
+	{memoizeRule()}?
 	;
 
 storage_class_specifier 
@@ -768,6 +1273,7 @@ simple_type_specifier
 		java.util.BitSet auxBitSet=(java.util.BitSet)CPPvariables.QI_TYPE.clone(); 
 		auxBitSet.or(CPPvariables.QI_CTOR);
 		List sts = new ArrayList();
+		if (memoizedRule(MEMO_SIMPLE_TYPE_SPECIFIER)) return;
 	} 
 	:	(	{qualifiedItemIsOneOf(auxBitSet,0)}? 
 			 s = qualified_type 
@@ -789,7 +1295,7 @@ simple_type_specifier
 			|	("_declspec"|"__declspec") LPAREN ID RPAREN //euluis: ignore
 			)+ {m.simpleTypeSpecifier(sts);}
 		)
-		
+		{memoizeRule()}?
 	;
 	
 qualified_type returns [String q=""]
@@ -813,7 +1319,7 @@ qualified_type returns [String q=""]
 	;
 
 class_specifier
-    {String saveClass="";String id="";String type="";}
+    {String saveClass="";String id="";String type="";Token start=LT(1);}
 	:	("class" {type=CPPvariables.OT_CLASS;}
 		|"struct" {type=CPPvariables.OT_STRUCT;}	
 		|"union"  {type=CPPvariables.OT_UNION;}
@@ -823,7 +1329,11 @@ class_specifier
 				{	saveClass = enclosingClass;
 				 	enclosingClass = id;
 				}
-				{m.beginClassDefinition(type, id);} 
+				{
+					m.beginClassDefinition(type, id);
+					if (start.getFilename() != null)
+						m.classSourceFile(start.getFilename());
+				} 
 				(base_clause)? 
 				LCURLY
 				{
@@ -895,6 +1405,7 @@ qualified_id returns [String q=""]
 	{
 	String so="";
 	String qitem="";
+	if (memoizedRule(MEMO_QUALIFIED_ID)) return q;
 	}
 	:
 	so =  scope_override
@@ -915,6 +1426,7 @@ qualified_id returns [String q=""]
 	("true"|"false")	// DW 21/07/03 fix to pass test8.i
 	)
 	{q = qitem;}
+	{memoizeRule()}?
 	;
 
 typeID
@@ -941,6 +1453,9 @@ initializer
 	:
 	{m.beginInitializer();} 
 	(
+			// the initializers within curly braces are still reported
+			{outline && LA(1) != LCURLY}? skipped_expression[false]
+		|
 			remainder_expression // DW 18/4/01 assignment_expression
 		|
 			LCURLY initializer (COMMA initializer)* RCURLY
@@ -949,6 +1464,7 @@ initializer
 	;
 
 class_head
+	{if (memoizedRule(MEMO_CLASS_HEAD)) return;}
 	:	// Used only by predicates	
 	("struct"  
 	|"union" 
@@ -958,6 +1474,7 @@ class_head
 		(LESSTHAN template_argument_list GREATERTHAN)?
 		(base_clause)? 
 	)? LCURLY
+	{memoizeRule()}?
 	;
 
 base_clause
@@ -966,8 +1483,10 @@ base_clause
 	;
 
 base_specifier
-	{String qt=""; m.beginBaseSpecifier();}
+	{String qt="";}
 	:	// DW 13/08/03 Should check qualified_type for class-name?
+		// not an init-action, which would be called while guessing
+		{m.beginBaseSpecifier();}
 		(	"virtual" (	access_specifier)? qt = qualified_type {m.baseSpecifier(qt, true);}
 			|	 access_specifier "virtual" qt = qualified_type {m.baseSpecifier(qt, true);}
 			|	 access_specifier qt = qualified_type {m.baseSpecifier(qt, false);}
@@ -983,8 +1502,8 @@ access_specifier
 	;
 
 member_declarator_list
-		{m.beginMemberDeclaratorList();}
 	:	
+		{m.beginMemberDeclaratorList();}
 		(
 		member_declarator (ASSIGNEQUAL OCTALINT)? // The value must be 0 (pure virt.)
 		(COMMA member_declarator (ASSIGNEQUAL OCTALINT)? )*
@@ -993,8 +1512,8 @@ member_declarator_list
 	;
 
 member_declarator
-		{m.beginMemberDeclarator();}
 	:	
+		{m.beginMemberDeclarator();}
 		(
 		((ID)? COLON constant_expression)=>(ID)? COLON constant_expression
 	|  
@@ -1004,6 +1523,7 @@ member_declarator
 	;
 
 conversion_function_decl_or_def
+	{if (memoizedRule(MEMO_CONVERSION_FUNCTION)) return;}
 	:	OPERATOR 
 	    declaration_specifiers 
 		(STAR | AMPERSAND)?	// DW 01/08/03 Use type_specifier here? see syntax
@@ -1011,9 +1531,10 @@ conversion_function_decl_or_def
 		LPAREN (parameter_list)? RPAREN	
 		(type_qualifier)?
 		(exception_specification)?
-		(	compound_statement
+		(	function_body
 		|	SEMICOLON 
 		)
+		{memoizeRule()}?
 	;
 
 // JEL note:  does not use (const|volatile)* to avoid lookahead problems
@@ -1023,12 +1544,15 @@ cv_qualifier_seq
 	;
 
 declarator
+	{if (memoizedRule(MEMO_DECLARATOR)) return;}
 	:
-		//{( !(LA(1)==SCOPE||LA(1)==ID) || qualifiedItemIsOneOf(QI_PTR_MEMBER) )}?
+	(	//{( !(LA(1)==SCOPE||LA(1)==ID) || qualifiedItemIsOneOf(QI_PTR_MEMBER) )}?
 		(ptr_operator)=>ptr_operator	// AMPERSAND or STAR
 		declarator 
 	|	
 		direct_declarator
+	)
+	{memoizeRule()}?
 	;
 	
 direct_declarator
@@ -1091,11 +1615,14 @@ declarator_suffixes
  * TER: warning: seems that "ID::" will always bypass and go to 2nd alt :(
  */
 function_declarator 
+	{if (memoizedRule(MEMO_FUNCTION_DECLARATOR)) return;}
 	:	
-		//{( !(LA(1)==SCOPE||LA(1)==ID) || qualifiedItemIsOneOf(QI_PTR_MEMBER) )}?
+	(	//{( !(LA(1)==SCOPE||LA(1)==ID) || qualifiedItemIsOneOf(QI_PTR_MEMBER) )}?
 		(ptr_operator)=> ptr_operator function_declarator
 	|	
 		function_direct_declarator
+	)
+	{memoizeRule()}?
 	;
 
 function_direct_declarator
@@ -1146,13 +1673,15 @@ ctor_head
 	;
 
 ctor_decl_spec
-	{List declSpecs = new ArrayList();}
+	{List declSpecs = new ArrayList();
+	if (memoizedRule(MEMO_CTOR_DECL_SPEC)) return;}
 	:
 	(	("inline"|"_inline"|"__inline") {declSpecs.add("inline");}
 		|
 		"explicit" {declSpecs.add("explicit");}
 	)*
 	{m.declarationSpecifiers(declSpecs);}
+	{memoizeRule()}?
 	;
 
 ctor_declarator
@@ -1180,7 +1709,7 @@ qualified_ctor_id returns [String q=""]
 
 ctor_body
 	:
-	(ctor_initializer)? compound_statement
+	(ctor_initializer)? function_body
 	;
 
 ctor_initializer
@@ -1195,10 +1724,12 @@ superclass_init
 	;
 
 dtor_head
+	{if (memoizedRule(MEMO_DTOR_HEAD)) return;}
 	:
 	{m.beginDtorHead();}
 	dtor_decl_spec dtor_declarator
 	{m.endDtorHead();}
+	{memoizeRule()}?
 	;
 
 dtor_decl_spec
@@ -1224,7 +1755,7 @@ dtor_declarator
 
 dtor_body
 	:
-	compound_statement
+	function_body
 	;
 
 parameter_list
@@ -1233,14 +1764,16 @@ parameter_list
 
 parameter_declaration_list
 	:	
-	(	parameter_declaration 
+	(	parameter_declaration[false] 
 		(// Have not been able to find way of stopping warning of non-determinism between alt 1 and exit branch of block
-		 COMMA parameter_declaration
+		 COMMA parameter_declaration[false]
 		)*
 	)
 	;
 
-parameter_declaration
+// The default argument of a template parameter ends at the ">" which isn't 
+// nested, as in "template <int N = 3> class X"
+parameter_declaration [boolean templateParameter]
 	{java.util.BitSet auxBitSet=(java.util.BitSet)CPPvariables.QI_TYPE.clone(); auxBitSet.or(CPPvariables.QI_CTOR);}
 	:	{m.beginParameterDeclaration();}
 		(
@@ -1257,7 +1790,9 @@ parameter_declaration
 			ELLIPSIS
 		)
 		(ASSIGNEQUAL 
-		 remainder_expression // DW 18/4/01 assignment_expression
+			(	{outline}? skipped_expression[templateParameter]
+			|	remainder_expression // DW 18/4/01 assignment_expression
+			)
 		)?
 		{m.endParameterDeclaration();}
 	;
@@ -1305,7 +1840,11 @@ exception_specification
 		RPAREN
 	;
 
+// The template parameters are visible up to the end of the declaration that 
+// follows, even while guessing, the scope being exited by that declaration or 
+// by the rewind of the guess.
 template_head
+	{symbols.enterTemplateScope();}
 	:	
 		"template"
 		LESSTHAN template_parameter_list GREATERTHAN
@@ -1328,12 +1867,9 @@ template_parameter
 	:
 	(options{generateAmbigWarnings = false;}:
 		("class"|"typename") 
-		(id:ID  (ASSIGNEQUAL assigned_type_name)? )?
-		{	if(!symbols.containsKey(id.getText()))
-				symbols.put(id.getText(),CPPvariables.OT_TYPE_DEF);
-		}
+		(id:ID {declareTemplateParameter(id.getText())}? (ASSIGNEQUAL assigned_type_name)? )?
 	|	
-		parameter_declaration	// DW 30/06/03 This doesn't seem to match the current standard
+		parameter_declaration[true]	// DW 30/06/03 This doesn't seem to match the current standard
 	)
 	;
 
@@ -1360,7 +1896,7 @@ template_argument_list
 	:	template_argument (COMMA template_argument)*
 	;
 
-/* Here assignment_expression was changed to shift_expression to rule out
+/* Here assignment_expression was changed to a shift expression to rule out
  *  x< 1<2 > which causes ambiguities. As a result, these can be used only
  *  by enclosing parentheses x<(1<2)>. This is true for x<1+2> ==> bad,
  *  x<(1+2)> ==> ok.
@@ -1371,7 +1907,7 @@ template_argument
 		{( !(LA(1)==SCOPE||LA(1)==ID) || qualifiedItemIsOneOf(auxBitSet,0) )}?
 		type_name
 	|	
-		shift_expression // failed in iosfwd
+		binary_expression[PREC_SHIFT] // failed in iosfwd
 //	|	assignment_expression	// Inserted as per grammar summary
 	;
 
@@ -1418,9 +1954,27 @@ default_statement
 
 compound_statement
 	:	
-		{m.beginCompoundStatement();}
+		{m.beginCompoundStatement(); symbols.enterScope();}
 		LCURLY (statement_list)? RCURLY 
+		{symbols.exitScope(); m.endCompoundStatement();}
+	;
+
+function_body
+	:
+		{skipFunctionBodies || outline}? 
+		{m.beginCompoundStatement();}
+		balanced_curlies
 		{m.endCompoundStatement();}
+	|	compound_statement
+	;
+
+// Matches the tokens up to the matching right curly brace
+balanced_curlies
+	:	LCURLY
+		(	balanced_curlies
+		|	~(LCURLY | RCURLY | EOF)
+		)*
+		RCURLY
 	;
 
 /* NOTE: cannot remove ELSE ambiguity, but it parses correctly.
@@ -1540,87 +2094,48 @@ remainder_expression
 
 conditional_expression
 	:	
-		logical_or_expression
+		binary_expression[PREC_LOGICAL_OR]
 		(QUESTIONMARK expression COLON conditional_expression)?
 	;
 
 constant_expression
-	:
-		conditional_expression
-	;
-
-logical_or_expression
-	:	
-		logical_and_expression (OR logical_and_expression)* 
-	;
-
-logical_and_expression
-	:	
-		inclusive_or_expression (AND inclusive_or_expression)* 
+	:	{outline}? skipped_expression[false]
+	|	conditional_expression
 	;
 
-inclusive_or_expression
-	:	
-		exclusive_or_expression (BITWISEOR exclusive_or_expression)*
-	;
-
-exclusive_or_expression
-	:	
-		and_expression (BITWISEXOR and_expression)*
-	;
-
-and_expression
-	:	
-	equality_expression (AMPERSAND  equality_expression)*
-	;
-
-equality_expression
-	:	
-		relational_expression ((NOTEQUAL | EQUAL) relational_expression)*
-	;
-
-relational_expression
-	:	shift_expression
+/* The binary operators, from logical or down to pointer to member, are 
+ * parsed by precedence climbing instead of one rule per precedence level, 
+ * so that an operand - most often a single primary expression - is reached 
+ * with one rule call instead of eleven. The operators of a level are left 
+ * associative, so, the right operand of an operator only takes the 
+ * operators that bind tighter. The operands are cast expressions.
+ *
+ * ANTLR has trouble dealing with the analysis of the confusing unary/binary
+ * operators such as STAR, AMPERSAND, PLUS, etc...  With 
+ * warnWhenFollowAmbig = false we simply tell ANTLR to use the 
+ * "quick-to-analyze" approximate lookahead as full LL(k) lookahead will not 
+ * resolve the ambiguity anyway.  Might as well not bother.  This has the 
+ * side-benefit that ANTLR doesn't go off to lunch here (take infinite time 
+ * to read grammar).
+ */
+binary_expression [int minPrecedence]
+	{int p = 0;}
+	:	cast_expression
 		(options {warnWhenFollowAmbig = false;}:
-			(	LESSTHAN
-			|	GREATERTHAN
-			|	LESSTHANOREQUALTO
-			|	GREATERTHANOREQUALTO
+			{(p = binaryPrecedence(LA(1))) >= minPrecedence}?
+			(	OR | AND | BITWISEOR | BITWISEXOR | AMPERSAND
+			|	NOTEQUAL | EQUAL
+			|	LESSTHAN | GREATERTHAN 
+			|	LESSTHANOREQUALTO | GREATERTHANOREQUALTO
+			|	SHIFTLEFT | SHIFTRIGHT
+			|	PLUS | MINUS
+			|	STAR | DIVIDE | MOD
+			|	DOTMBR | POINTERTOMBR
 			)
-		 shift_expression
-		)*
-	;
-
-shift_expression
-	:	additive_expression ((SHIFTLEFT | SHIFTRIGHT) additive_expression)*
-	;
-
-/* See comment for multiplicative_expression regarding #pragma */
-additive_expression
-	:	multiplicative_expression
-		(options{warnWhenFollowAmbig = false;}:
-			(PLUS | MINUS) multiplicative_expression
-		)*
-	;
-
-/* ANTLR has trouble dealing with the analysis of the confusing unary/binary
- * operators such as STAR, AMPERSAND, PLUS, etc...  With the #pragma (now "(options{warnWhenFollowAmbig = false;}:" etc.)
- * we simply tell ANTLR to use the "quick-to-analyze" approximate lookahead
- * as full LL(k) lookahead will not resolve the ambiguity anyway.  Might
- * as well not bother.  This has the side-benefit that ANTLR doesn't go
- * off to lunch here (take infinite time to read grammar).
- */
-multiplicative_expression
-	:	pm_expression
-		(options{warnWhenFollowAmbig = false;}:
-			(STAR | DIVIDE | MOD) pm_expression
+			binary_expression[p + 1]
 		)*
 	;
 
-pm_expression
-	:	cast_expression ((DOTMBR | POINTERTOMBR) cast_expression)*
-	;
-
 /* The string "( ID" can be either the start of a cast or
  * the start of a unary_expression.  However, the ID must
  * be a type name for it to be a cast.  Since ANTLR can only hoist
@@ -1692,6 +2207,7 @@ unary_expression
 	;
 
 postfix_expression
+	{if (memoizedRule(MEMO_POSTFIX_EXPRESSION)) return;}
 	:
 	(	
 		options {warnWhenFollowAmbig = false;}:
@@ -1718,6 +2234,7 @@ postfix_expression
 		LESSTHAN type_specifier (ptr_operator)? GREATERTHAN
 		LPAREN expression RPAREN
 	)
+	{memoizeRule()}?
 	;
 
 primary_expression
@@ -1857,7 +2374,33 @@ delete_expression
 	;
 
 expression_list
-	:	assignment_expression (COMMA assignment_expression)*
+	:	{outline}? skipped_expression[false] (COMMA skipped_expression[false])*
+	|	assignment_expression (COMMA assignment_expression)*
+	;
+
+// Matches the tokens of an expression, without parsing it, up to the first 
+// comma, semicolon or closing bracket which isn't nested, or, in a template 
+// argument, up to the first ">" which isn't nested
+skipped_expression [boolean templateArgument]
+	:	(options {warnWhenFollowAmbig = false;}:
+			id:ID {skipTemplateArguments(id.getText())}?
+		|	LPAREN skipped_brackets RPAREN
+		|	LSQUARE skipped_brackets RSQUARE
+		|	LCURLY skipped_brackets RCURLY
+		|	{!templateArgument || LA(1) != GREATERTHAN}?
+			~(	ID | COMMA | SEMICOLON | LPAREN | RPAREN | LSQUARE | RSQUARE 
+			|	LCURLY | RCURLY | EOF
+			)
+		)+
+	;
+
+// Matches the tokens up to the closing bracket which isn't nested
+skipped_brackets
+	:	(	LPAREN skipped_brackets RPAREN
+		|	LSQUARE skipped_brackets RSQUARE
+		|	LCURLY skipped_brackets RCURLY
+		|	~(LPAREN | RPAREN | LSQUARE | RSQUARE | LCURLY | RCURLY | EOF)
+		)*
 	;
 
 constant
@@ -1949,6 +2492,78 @@ tokens
 	OPERATOR = "operator";
 	}
 
+{
+	private static final KeywordTable KEYWORDS = 
+		new KeywordTable(CPPParser._tokenNames);
+
+	/*
+	 * Keywords are looked up in a perfect hash table, directly from the 
+	 * text buffer, instead of the literals Hashtable.
+	 */
+	public int testLiteralsTable(int ttype) {
+		return KEYWORDS.lookup(text.getBuffer(), text.length(), ttype);
+	}
+
+	public int testLiteralsTable(String someText, int ttype) {
+		return KEYWORDS.lookup(someText.toCharArray(), someText.length(), 
+			ttype);
+	}
+
+	// the token returned by every call of nextToken, if any
+	private CPPToken reusedToken;
+	
+	/*
+	 * When true, nextToken returns the same token object each time, so, 
+	 * the fields of a token must be read before the next call. This is 
+	 * what a CompactTokenStream does, which is why it sets it.
+	 */
+	void setReuseTokens(boolean reuse)
+	{
+		reusedToken = reuse ? new CPPToken() : null;
+	}
+	
+	/*
+	 * The tokens carry the name of the file where they were read from, 
+	 * which, for preprocessed input, is given by the line markers.
+	 */
+	protected Token makeToken(int t) {
+		CPPToken token = reusedToken != null ? reusedToken : new CPPToken();
+		token.setType(t);
+		token.setColumn(inputState.getTokenStartColumn());
+		token.setLine(inputState.getTokenStartLine());
+		token.setFilename(getFilename());
+		return token;
+	}
+
+	/*
+	 * Processes a line marker - "#line 12 \"file.h\"" or "# 12 \"file.h\" 2" - 
+	 * so that the following lines are numbered as in the original file. 
+	 * Other directives are ignored.
+	 */
+	void lineMarker(String directive) {
+		int i = 0;
+		int n = directive.length();
+		while (i < n && Character.isWhitespace(directive.charAt(i))) i++;
+		if (directive.startsWith("line", i)) i += 4;
+		while (i < n && Character.isWhitespace(directive.charAt(i))) i++;
+		int start = i;
+		while (i < n && Character.isDigit(directive.charAt(i))) i++;
+		if (i == start) return;
+		int lineNumber = Integer.parseInt(directive.substring(start, i));
+		while (i < n && Character.isWhitespace(directive.charAt(i))) i++;
+		if (i < n && directive.charAt(i) == '"') {
+			StringBuffer name = new StringBuffer();
+			for (i++; i < n && directive.charAt(i) != '"'; i++) {
+				char c = directive.charAt(i);
+				if (c == '\\' && i + 1 < n) c = directive.charAt(++i);
+				name.append(c);
+			}
+			setFilename(name.toString());
+		}
+		setLine(lineNumber);
+	}
+}
+
 
 /* Operators: */
 
@@ -2051,7 +2666,7 @@ CPPComment
 
 DIRECTIVE
 	:	'#' ld:LineDirective
-		{ $setType(Token.SKIP);  newline();} 
+		{ $setType(Token.SKIP);  newline(); lineMarker(ld.getText());} 
 	;
 
 protected
@@ -51,8 +51,9 @@ class CtorModeler extends XtorModeler {
      * Creates the constructor.
      */
     CtorModeler(Object theParent, Object visibility, Object returnType, 
-            boolean ignoreCtor, ProfileCpp profile) {
+            boolean ignoreCtor, ProfileCpp profile,
+            OperationIndex operationIndex) {
         super(theParent, visibility, returnType, "create", ignoreCtor,
-                profile);
+                profile, operationIndex);
     }
 }
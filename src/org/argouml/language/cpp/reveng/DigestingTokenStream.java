@@ -0,0 +1,94 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import antlr.TokenStream;
+import antlr.TokenStreamException;
+
+/**
+ * A {@link CompactTokenStream} that also computes a digest of the types and
+ * texts of the tokens, before handing them over to the parser.
+ *
+ * Since the tokens are those produced from the preprocessed translation unit,
+ * the digest changes when any of the included headers changes in a way that
+ * is relevant to the unit, but, not when only comments or white space change.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class DigestingTokenStream extends CompactTokenStream {
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String digest;
+
+    /**
+     * Reads all the tokens from source.
+     *
+     * @param source the stream of tokens of a translation unit, normally the
+     *            lexer
+     * @throws TokenStreamException if source throws it
+     */
+    DigestingTokenStream(TokenStream source) throws TokenStreamException {
+        super(source);
+        MessageDigest md = createMessageDigest();
+        for (int i = 0; i < size(); i++) {
+            md.update((byte) getType(i));
+            if (getText(i) != null) {
+                md.update(getBytes(getText(i)));
+            }
+            md.update((byte) 0);
+        }
+        digest = toHex(md.digest());
+    }
+
+    /**
+     * @return the digest of the tokens, in hexadecimal
+     */
+    String getDigest() {
+        return digest;
+    }
+
+    private static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM
+                + " is required to be supported by the Java platform.", e);
+        }
+    }
+
+    private static byte[] getBytes(String text) {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(
+                "UTF-8 is required to be supported by the Java platform.", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+        }
+        return sb.toString();
+    }
+}
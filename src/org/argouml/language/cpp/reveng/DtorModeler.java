@@ -52,8 +52,9 @@ class DtorModeler extends XtorModeler {
      * Creates the destructor modeler.
      */
     DtorModeler(Object theParent, Object visibility, Object returnType,
-            boolean ignoreDtor, ProfileCpp profile) {
+            boolean ignoreDtor, ProfileCpp profile,
+            OperationIndex operationIndex) {
         super(theParent, visibility, returnType, "destroy", ignoreDtor,
-                profile);
+                profile, operationIndex);
     }
 }
@@ -0,0 +1,490 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.anarres.cpp.JavaFileSystem;
+import org.anarres.cpp.LexerException;
+import org.anarres.cpp.LexerSource;
+import org.anarres.cpp.Macro;
+import org.anarres.cpp.Preprocessor;
+import org.anarres.cpp.Source;
+import org.anarres.cpp.Token;
+import org.anarres.cpp.VirtualFile;
+import org.anarres.cpp.VirtualFileSystem;
+
+/**
+ * Preprocesses translation units, sharing the expansion of the included
+ * headers among all the translation units of an import session.
+ *
+ * The expansion of a header depends on the macros defined when it is
+ * included and on the include directories, which tell the files of the
+ * headers it includes, therefore, an expansion is cached by the path and
+ * modification time of the header, together with the include directories of
+ * the translation unit and a fingerprint of all the macros defined at the
+ * point of inclusion. Besides the expanded text, the changes that the
+ * header made to the macro definitions - e.g., the definition of its include
+ * guard - are cached too, and are applied when the cached expansion is
+ * reused: the macros that the header undefined or redefined are removed
+ * before the expansion is read again, since the text that follows their
+ * <code>#undef</code> was expanded without them, and the macros that it
+ * defined are added after it, since the text that precedes their
+ * <code>#define</code> was expanded without them. The cached expansion is
+ * read again without expanding its macros, since it is already expanded.
+ *
+ * This class is thread safe, so, it may be shared among several parser
+ * threads.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class HeaderCache {
+
+    private static final Logger LOG = Logger.getLogger(
+        HeaderCache.class.getName());
+
+    private final Map<String, Expansion> expansions =
+        new ConcurrentHashMap<String, Expansion>();
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private final List<String> systemIncludePath;
+
+    /**
+     * Short identifiers of the include directories of the translation units,
+     * by {@link CompileCommand#getIncludeKey()}, which are part of the keys
+     * of the expansions.
+     */
+    private final Map<String, Integer> includeKeys =
+        new HashMap<String, Integer>();
+
+    /**
+     * Create a cache for translation units which don't include system
+     * headers.
+     */
+    HeaderCache() {
+        this(Collections.<String>emptyList());
+    }
+
+    /**
+     * Create a cache for translation units which include system headers.
+     * When the path isn't empty, the preprocessed text has line markers, so
+     * that the parser knows the file from which each declaration came.
+     *
+     * @param theSystemIncludePath the directories where the headers included
+     *            with angle brackets are searched for
+     */
+    HeaderCache(List<String> theSystemIncludePath) {
+        systemIncludePath = theSystemIncludePath;
+    }
+
+    /**
+     * Preprocess a translation unit.
+     *
+     * @param f the translation unit
+     * @return the preprocessed text of the translation unit
+     * @throws IOException if a file can't be read
+     * @throws LexerException if the preprocessor fails
+     */
+    String preprocess(File f) throws IOException, LexerException {
+        return preprocess(new CompileCommand(f));
+    }
+
+    /**
+     * Preprocess a translation unit with the options of its compile command.
+     *
+     * @param command the compile command of the translation unit
+     * @return the preprocessed text of the translation unit
+     * @throws IOException if a file can't be read
+     * @throws LexerException if the preprocessor fails
+     */
+    String preprocess(CompileCommand command)
+        throws IOException, LexerException {
+        return new UnitPreprocessor(command).run();
+    }
+
+    private Integer getIncludeKey(CompileCommand command) {
+        String key = command.getIncludeKey();
+        synchronized (includeKeys) {
+            Integer id = includeKeys.get(key);
+            if (id == null) {
+                id = Integer.valueOf(includeKeys.size());
+                includeKeys.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return the number of header inclusions served from the cache
+     */
+    int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of header inclusions that had to be expanded
+     */
+    int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * A cached expansion of a header.
+     */
+    private static class Expansion {
+        private final String text;
+
+        private final List<Macro> defined;
+
+        /**
+         * The macros that were removed or replaced.
+         */
+        private final List<String> undefined;
+
+        Expansion(String theText, List<Macro> theDefined,
+                List<String> theUndefined) {
+            text = theText;
+            defined = theDefined;
+            undefined = theUndefined;
+        }
+    }
+
+    /**
+     * The preprocessing of a single translation unit.
+     */
+    private class UnitPreprocessor implements VirtualFileSystem {
+
+        private final Preprocessor preprocessor;
+
+        private final VirtualFileSystem fileSystem = new JavaFileSystem();
+
+        private final StringBuilder output = new StringBuilder();
+
+        /**
+         * Fingerprints of the macros, which are computed once for each macro
+         * of the translation unit.
+         */
+        private final Map<Macro, long[]> fingerprints =
+            new IdentityHashMap<Macro, long[]>();
+
+        /**
+         * The identifier of the include directories of the translation unit.
+         */
+        private final Integer includeKey;
+
+        UnitPreprocessor(CompileCommand command)
+            throws IOException, LexerException {
+            preprocessor = new Preprocessor(command.getFile());
+            preprocessor.setFileSystem(this);
+            command.configure(preprocessor, systemIncludePath);
+            includeKey = getIncludeKey(command);
+        }
+
+        /**
+         * Does the same as {@link org.anarres.cpp.CppReader CppReader}, but,
+         * in one go.
+         */
+        String run() throws IOException, LexerException {
+            try {
+                for (;;) {
+                    Token tok = preprocessor.token();
+                    if (tok.getType() == Token.EOF) {
+                        break;
+                    }
+                    if (tok.getType() == Token.CCOMMENT
+                        || tok.getType() == Token.CPPCOMMENT) {
+                        output.append(' ');
+                    } else {
+                        output.append(tok.getText());
+                    }
+                }
+                return output.toString();
+            } finally {
+                preprocessor.close();
+            }
+        }
+
+        public VirtualFile getFile(String path) {
+            return new CachedFile(fileSystem.getFile(path));
+        }
+
+        public VirtualFile getFile(String dir, String name) {
+            return new CachedFile(fileSystem.getFile(dir, name));
+        }
+
+        /**
+         * @return the fingerprint of the macros currently defined
+         */
+        private String getMacroState() {
+            long sum1 = 0;
+            long sum2 = 0;
+            Map<String, Macro> macros = preprocessor.getMacros();
+            for (Macro macro : macros.values()) {
+                long[] fingerprint = fingerprints.get(macro);
+                if (fingerprint == null) {
+                    fingerprint = fingerprint(macro);
+                    fingerprints.put(macro, fingerprint);
+                }
+                sum1 += fingerprint[0];
+                sum2 += fingerprint[1];
+            }
+            return macros.size() + ":" + Long.toHexString(sum1) + ":"
+                + Long.toHexString(sum2);
+        }
+
+        private long[] fingerprint(Macro macro) {
+            String s = macro.getName();
+            if (macro.isFunctionLike()) {
+                s += "(" + macro.getArgs() + "," + macro.isVariadic() + ")";
+            }
+            s += " " + macro.getText();
+            long h1 = 1125899906842597L;
+            long h2 = 3074457345618258791L;
+            for (int i = 0; i < s.length(); i++) {
+                h1 = 31 * h1 + s.charAt(i);
+                h2 = (h2 ^ s.charAt(i)) * 1099511628211L;
+            }
+            return new long[] {h1, h2};
+        }
+
+        /**
+         * A header, which source is either its cached expansion or the
+         * contents of the file, in which case its expansion is captured into
+         * the cache.
+         */
+        private class CachedFile implements VirtualFile {
+            private final VirtualFile file;
+
+            CachedFile(VirtualFile theFile) {
+                file = theFile;
+            }
+
+            public boolean isFile() {
+                return file.isFile();
+            }
+
+            public String getPath() {
+                return file.getPath();
+            }
+
+            public String getName() {
+                return file.getName();
+            }
+
+            public VirtualFile getParentFile() {
+                VirtualFile parent = file.getParentFile();
+                return parent == null ? null : new CachedFile(parent);
+            }
+
+            public VirtualFile getChildFile(String name) {
+                return new CachedFile(file.getChildFile(name));
+            }
+
+            public Source getSource() throws IOException {
+                File f = new File(getPath());
+                String key = getPath() + "|" + f.lastModified() + "|"
+                    + includeKey + "|" + getMacroState();
+                Expansion expansion = expansions.get(key);
+                if (expansion != null) {
+                    hits.incrementAndGet();
+                    return new ReplaySource(this, expansion);
+                }
+                misses.incrementAndGet();
+                return new CaptureSource(this, key);
+            }
+
+            @Override
+            public String toString() {
+                return file.toString();
+            }
+        }
+
+        /**
+         * Reads a header from its file, capturing its expansion.
+         */
+        private class CaptureSource extends LexerSource {
+            private final VirtualFile file;
+
+            private final String key;
+
+            private final Map<String, Macro> macrosBefore;
+
+            private int start = -1;
+
+            CaptureSource(VirtualFile theFile, String theKey)
+                throws IOException {
+                super(new BufferedReader(new InputStreamReader(
+                    new FileInputStream(theFile.getPath()))), true);
+                file = theFile;
+                key = theKey;
+                macrosBefore = new HashMap<String, Macro>(
+                    preprocessor.getMacros());
+            }
+
+            @Override
+            public Token token() throws IOException, LexerException {
+                if (start < 0) {
+                    start = output.length();
+                }
+                Token tok = super.token();
+                if (tok.getType() == Token.EOF && key != null
+                    && !expansions.containsKey(key)) {
+                    capture();
+                }
+                return tok;
+            }
+
+            private void capture() {
+                List<Macro> defined = new ArrayList<Macro>();
+                Map<String, Macro> macrosAfter = preprocessor.getMacros();
+                for (Macro macro : macrosAfter.values()) {
+                    if (macrosBefore.get(macro.getName()) != macro) {
+                        defined.add(macro);
+                    }
+                }
+                List<String> undefined = new ArrayList<String>();
+                for (String name : macrosBefore.keySet()) {
+                    if (macrosAfter.get(name) != macrosBefore.get(name)) {
+                        undefined.add(name);
+                    }
+                }
+                expansions.put(key, new Expansion(output.substring(start),
+                    defined, undefined));
+                LOG.finer("Cached the expansion of " + file);
+            }
+
+            @Override
+            public String getPath() {
+                return file.getPath();
+            }
+
+            @Override
+            public String getName() {
+                // as the files read by the preprocessor, so that the line
+                // markers have the paths of the headers
+                return file.getPath();
+            }
+        }
+
+        /**
+         * Reads the cached expansion of a header, applying the changes that it
+         * made to the macro definitions.
+         */
+        private class ReplaySource extends LexerSource {
+            private final VirtualFile file;
+
+            private final Expansion expansion;
+
+            private boolean started;
+
+            private boolean finished;
+
+            private boolean lineStart = true;
+
+            ReplaySource(VirtualFile theFile, Expansion theExpansion) {
+                super(new StringReader(theExpansion.text), true);
+                file = theFile;
+                expansion = theExpansion;
+            }
+
+            @Override
+            public Token token() throws IOException, LexerException {
+                if (!started) {
+                    started = true;
+                    for (String name : expansion.undefined) {
+                        preprocessor.getMacros().remove(name);
+                    }
+                }
+                Token tok = super.token();
+                if (tok.getType() == Token.EOF && !finished) {
+                    finished = true;
+                    for (Macro macro : expansion.defined) {
+                        preprocessor.addMacro(macro);
+                    }
+                }
+                if (tok.getType() == Token.HASH && lineStart) {
+                    return lineMarker(tok);
+                }
+                lineStart = tok.getType() == Token.NL
+                    || (lineStart && tok.getType() == Token.WHITESPACE);
+                if (tok.getType() == Token.IDENTIFIER) {
+                    return expanded(tok);
+                }
+                return tok;
+            }
+
+            /**
+             * The identifiers of an expansion were already expanded, so,
+             * they mustn't be expanded again - e.g., with
+             * <code>#define foo foo + 1</code> the expansion of
+             * <code>foo</code> is <code>foo + 1</code>, which would become
+             * <code>foo + 1 + 1</code>. Since the preprocessor only looks up
+             * the macros of the identifiers, they are given to it as
+             * preprocessing numbers, which it passes on as they are.
+             */
+            private Token expanded(Token identifier) {
+                return new Token(Token.NUMBER, identifier.getLine(),
+                    identifier.getColumn(), identifier.getText());
+            }
+
+            /**
+             * The only directives of an expansion are the line markers of the
+             * headers that it included, which are given to the preprocessor
+             * as such, since it would drop them as directives.
+             */
+            private Token lineMarker(Token hash)
+                throws IOException, LexerException {
+                StringBuilder marker = new StringBuilder(hash.getText());
+                Token tok;
+                do {
+                    tok = super.token();
+                    marker.append(tok.getText());
+                } while (tok.getType() != Token.NL
+                    && tok.getType() != Token.EOF);
+                return new Token(Token.P_LINE, hash.getLine(),
+                    hash.getColumn(), marker.toString());
+            }
+
+            @Override
+            public String getPath() {
+                return file.getPath();
+            }
+
+            @Override
+            public String getName() {
+                // as the files read by the preprocessor, so that the line
+                // markers have the paths of the headers
+                return file.getPath();
+            }
+        }
+    }
+}
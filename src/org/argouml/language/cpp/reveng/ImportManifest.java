@@ -0,0 +1,129 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import static org.argouml.model.Model.getExtensionMechanismsFactory;
+import static org.argouml.model.Model.getExtensionMechanismsHelper;
+import static org.argouml.model.Model.getFacade;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.argouml.language.cpp.profile.BaseProfile;
+
+/**
+ * The manifest of the translation units imported into a model, holding for
+ * each one the digest of its preprocessed tokens, as computed by
+ * {@link DigestingTokenStream}.
+ *
+ * The manifest is kept in a tagged value of the model, so that it is saved
+ * with the project and stays consistent with the model elements that resulted
+ * from the import.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class ImportManifest {
+
+    /**
+     * Name of the tagged value of the model that holds the manifest. Each
+     * line of its value has the digest and the path of a translation unit.
+     */
+    static final String TV_NAME_IMPORT_MANIFEST = "cpp_import_manifest";
+
+    private static final String LINE_SEPARATOR = "\n";
+
+    private final Object model;
+
+    /**
+     * The digests by path of the translation units. Updated by the parser
+     * threads, therefore, concurrent.
+     */
+    private final Map<String, String> digests =
+        new ConcurrentHashMap<String, String>();
+
+    /**
+     * Load the manifest of the given model.
+     *
+     * @param theModel the model into which translation units are imported
+     */
+    ImportManifest(Object theModel) {
+        model = theModel;
+        String value = getFacade().getTaggedValueValue(model,
+            TV_NAME_IMPORT_MANIFEST);
+        if (value != null) {
+            for (String line : value.split(LINE_SEPARATOR)) {
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    digests.put(line.substring(separator + 1),
+                        line.substring(0, separator));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param f the translation unit
+     * @param digest the digest of the preprocessed tokens of f
+     * @return true if f was imported before with the same digest
+     */
+    boolean isUnchanged(File f, String digest) {
+        return digest.equals(digests.get(getPath(f)));
+    }
+
+    /**
+     * Register the digest of an imported translation unit.
+     *
+     * @param f the translation unit
+     * @param digest the digest of the preprocessed tokens of f
+     */
+    void update(File f, String digest) {
+        digests.put(getPath(f), digest);
+    }
+
+    /**
+     * Save the manifest into the tagged value of the model.
+     */
+    void store() {
+        StringBuilder value = new StringBuilder();
+        for (Map.Entry<String, String> entry
+                : new TreeMap<String, String>(digests).entrySet()) {
+            value.append(entry.getValue()).append(' ').append(entry.getKey())
+                .append(LINE_SEPARATOR);
+        }
+        String[] dataValues = new String[] {value.toString()};
+        Object tv = getFacade().getTaggedValue(model,
+            TV_NAME_IMPORT_MANIFEST);
+        if (tv == null) {
+            tv = getExtensionMechanismsFactory().createTaggedValue();
+            getExtensionMechanismsHelper().setType(tv,
+                BaseProfile.getTagDefinition(TV_NAME_IMPORT_MANIFEST));
+            getExtensionMechanismsHelper().setDataValues(tv, dataValues);
+            getExtensionMechanismsHelper().addTaggedValue(model, tv);
+        } else {
+            getExtensionMechanismsHelper().setDataValues(tv, dataValues);
+        }
+    }
+
+    private static String getPath(File f) {
+        try {
+            return f.getCanonicalPath();
+        } catch (IOException e) {
+            return f.getAbsolutePath();
+        }
+    }
+}
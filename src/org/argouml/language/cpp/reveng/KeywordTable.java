@@ -0,0 +1,133 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A perfect hash table of the keywords - the literals, in ANTLR terms - of
+ * the grammar, which {@link CPPLexer} uses instead of the literals
+ * <code>Hashtable</code> to find out if an identifier is a keyword. The
+ * lookup is done directly on the characters of the token, so, it doesn't
+ * allocate objects.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+final class KeywordTable {
+
+    private final char[][] keywords;
+
+    private final int[] types;
+
+    private final int multiplier;
+
+    private final int shift;
+
+    /**
+     * Build the table from the token names of a parser, where the literals
+     * are the quoted names.
+     *
+     * @param tokenNames the token names, indexed by token type
+     */
+    KeywordTable(String[] tokenNames) {
+        List<String> names = new ArrayList<String>();
+        List<Integer> nameTypes = new ArrayList<Integer>();
+        for (int type = 0; type < tokenNames.length; type++) {
+            String name = tokenNames[type];
+            if (name.length() > 2 && name.charAt(0) == '"'
+                && name.charAt(name.length() - 1) == '"') {
+                names.add(name.substring(1, name.length() - 1));
+                nameTypes.add(type);
+            }
+        }
+        int bits = 1;
+        while ((1 << bits) < names.size() * 2) {
+            bits++;
+        }
+        // search for a multiplier that maps each keyword to its own slot,
+        // growing the table if none is found
+        for (;;) {
+            int[] hashes = new int[names.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                char[] chars = names.get(i).toCharArray();
+                hashes[i] = hash(chars, chars.length);
+            }
+            int candidate = findMultiplier(hashes, bits);
+            if (candidate != 0) {
+                multiplier = candidate;
+                shift = 32 - bits;
+                keywords = new char[1 << bits][];
+                types = new int[1 << bits];
+                for (int i = 0; i < hashes.length; i++) {
+                    int slot = (hashes[i] * multiplier) >>> shift;
+                    keywords[slot] = names.get(i).toCharArray();
+                    types[slot] = nameTypes.get(i);
+                }
+                return;
+            }
+            bits++;
+        }
+    }
+
+    private static int findMultiplier(int[] hashes, int bits) {
+        int candidate = 0x9E3779B1;
+        for (int attempt = 0; attempt < 100000; attempt++) {
+            boolean[] used = new boolean[1 << bits];
+            boolean collision = false;
+            for (int i = 0; i < hashes.length && !collision; i++) {
+                int slot = (hashes[i] * candidate) >>> (32 - bits);
+                collision = used[slot];
+                used[slot] = true;
+            }
+            if (!collision) {
+                return candidate;
+            }
+            candidate += 0x6A09E668;
+            candidate |= 1;
+        }
+        return 0;
+    }
+
+    private static int hash(char[] chars, int length) {
+        int h = length;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[i];
+        }
+        return h;
+    }
+
+    /**
+     * Look up a keyword.
+     *
+     * @param chars the buffer with the token text, from its start
+     * @param length the length of the token text
+     * @param type the token type to return if the text isn't a keyword
+     * @return the token type of the keyword or type
+     */
+    int lookup(char[] chars, int length, int type) {
+        int slot = (hash(chars, length) * multiplier) >>> shift;
+        char[] keyword = keywords[slot];
+        if (keyword == null || keyword.length != length) {
+            return type;
+        }
+        for (int i = 0; i < length; i++) {
+            if (keyword[i] != chars[i]) {
+                return type;
+            }
+        }
+        return types[slot];
+    }
+}
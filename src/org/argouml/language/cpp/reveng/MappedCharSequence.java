@@ -0,0 +1,97 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link CharSequence} view of a memory mapped source file.
+ *
+ * Source files are nearly always plain ASCII, in which case each byte is a
+ * character and the view doesn't copy the contents of the file. Otherwise,
+ * the file is decoded with the default charset, as a
+ * {@link java.io.FileReader} would do.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+final class MappedCharSequence implements CharSequence {
+
+    private final ByteBuffer bytes;
+
+    private MappedCharSequence(ByteBuffer theBytes) {
+        bytes = theBytes;
+    }
+
+    /**
+     * Map a file into memory.
+     *
+     * @param f the file to map
+     * @return the characters of the file
+     * @throws IOException if the file can't be mapped
+     */
+    static CharSequence map(File f) throws IOException {
+        FileInputStream in = new FileInputStream(f);
+        try {
+            FileChannel channel = in.getChannel();
+            // the mapping stays valid after the channel is closed
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                channel.size());
+            if (isAscii(bytes)) {
+                return new MappedCharSequence(bytes);
+            }
+            return Charset.defaultCharset().decode(bytes);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        for (int i = bytes.limit() - 1; i >= 0; i--) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int length() {
+        return bytes.limit();
+    }
+
+    public char charAt(int index) {
+        return (char) bytes.get(index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        ByteBuffer slice = bytes.duplicate();
+        slice.position(start);
+        slice.limit(end);
+        return new MappedCharSequence(slice.slice());
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = charAt(i);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,181 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import static org.argouml.model.Model.getCoreHelper;
+import static org.argouml.model.Model.getFacade;
+import static org.argouml.model.Model.getModelManagementHelper;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Index of the model elements of the model into which C++ translation units
+ * are imported, so that the modeler finds them without walking the whole
+ * model.
+ *
+ * The index is built once per import session from the namespaces and classes
+ * of the model and is updated by the modeler as it creates them. It also
+ * caches the resolution of type names into model elements. It doesn't
+ * track the changes that others make to the model, therefore, it shouldn't be
+ * kept after the import.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class ModelIndex {
+
+    private final Object model;
+
+    /**
+     * The namespaces by name, by parent namespace. The parent namespaces are
+     * compared by reference, as the modeler always did.
+     */
+    private final Map<Object, Map<String, Object>> namespaces =
+        new IdentityHashMap<Object, Map<String, Object>>();
+
+    /**
+     * The classes by name, by namespace. As with
+     * {@link org.argouml.model.CoreHelper#getAllClasses(Object)}, the classes
+     * of a namespace include those of its nested namespaces.
+     */
+    private final Map<Object, Map<String, Object>> classes =
+        new IdentityHashMap<Object, Map<String, Object>>();
+
+    /**
+     * The types by name, as resolved by the modeler.
+     */
+    private final Map<String, Object> types = new HashMap<String, Object>();
+
+    private final OperationIndex operationIndex = new OperationIndex();
+
+    /**
+     * Build the index of the given model.
+     *
+     * @param theModel the model into which translation units are imported
+     */
+    ModelIndex(Object theModel) {
+        model = theModel;
+        for (Object ns : getModelManagementHelper().getAllNamespaces(model)) {
+            addNamespace(ns);
+        }
+        for (Object cls : getCoreHelper().getAllClasses(model)) {
+            addClass(cls);
+        }
+    }
+
+    /**
+     * @return the model which is indexed
+     */
+    Object getModel() {
+        return model;
+    }
+
+    /**
+     * @return the index of the operations of the classifiers of the model
+     */
+    OperationIndex getOperationIndex() {
+        return operationIndex;
+    }
+
+    /**
+     * Find the namespace with the given name which parent is
+     * <code>parentNs</code>.
+     *
+     * @param nsName namespace name
+     * @param parentNs the parent namespace of the namespace to get
+     * @return the namespace if it exists, <code>null</code> otherwise.
+     */
+    Object findNamespace(String nsName, Object parentNs) {
+        Map<String, Object> children = namespaces.get(parentNs);
+        return children == null ? null : children.get(nsName);
+    }
+
+    /**
+     * Add a namespace to the index. Must be called after the namespace is
+     * named and owned by its parent namespace.
+     *
+     * @param ns the namespace
+     */
+    void addNamespace(Object ns) {
+        String name = getFacade().getName(ns);
+        if (name == null) {
+            return;
+        }
+        put(namespaces, getFacade().getNamespace(ns), name, ns);
+    }
+
+    /**
+     * Find a class within the given namespace that has the given identifier.
+     *
+     * @param identifier the class identifier
+     * @param ns namespace to look in
+     * @return the class if found, null otherwise
+     */
+    Object findClass(String identifier, Object ns) {
+        Map<String, Object> nsClasses = classes.get(ns);
+        return nsClasses == null ? null : nsClasses.get(identifier);
+    }
+
+    /**
+     * Add a class to the index, in its namespace and in the enclosing ones,
+     * both as a class and as a namespace. Must be called after the class is
+     * named and owned by its namespace.
+     *
+     * @param cls the class
+     */
+    void addClass(Object cls) {
+        String name = getFacade().getName(cls);
+        if (name == null) {
+            return;
+        }
+        addNamespace(cls);
+        for (Object ns = getFacade().getNamespace(cls); ns != null;
+                ns = getFacade().getNamespace(ns)) {
+            put(classes, ns, name, cls);
+        }
+    }
+
+    /**
+     * @param typeName the name of a type, as referenced in the C++ source
+     * @return the model element previously resolved for typeName, or null
+     */
+    Object getType(String typeName) {
+        return types.get(typeName);
+    }
+
+    /**
+     * Register the model element into which a type name was resolved.
+     *
+     * @param typeName the name of a type, as referenced in the C++ source
+     * @param type the model element that represents the type
+     */
+    void putType(String typeName, Object type) {
+        types.put(typeName, type);
+    }
+
+    private static void put(Map<Object, Map<String, Object>> index,
+            Object ns, String name, Object element) {
+        Map<String, Object> elements = index.get(ns);
+        if (elements == null) {
+            elements = new HashMap<String, Object>();
+            index.put(ns, elements);
+        }
+        // the first one wins, as when the model elements were searched
+        if (!elements.containsKey(name)) {
+            elements.put(name, element);
+        }
+    }
+}
@@ -102,6 +102,14 @@ public interface Modeler {
      */
     void beginClassDefinition(String oType, String identifier);
 
+    /**
+     * Signals the file from which the class which definition began was read,
+     * i.e., the header or source file given by the line markers.
+     *
+     * @param filename The path of the file.
+     */
+    void classSourceFile(String filename);
+
     /**
      * Signals the end of a class definition.
      */
@@ -94,7 +94,7 @@ public class ModelerImpl implements Modeler {
      */
     private static final Logger LOG = Logger.getLogger(
             ModelerImpl.class.getName());
-    
+
     private Collection newElements;
     
     private ProfileCpp profile;
@@ -104,9 +104,26 @@ public class ModelerImpl implements Modeler {
     private AttributeModeler attributeModeler;
     
     private OperationModeler operationModeler;
+
+    /**
+     * The index of the model elements, which may be shared by the modelers
+     * of an import session.
+     */
+    private ModelIndex index;
     
     ModelerImpl(Project p) throws ProfileException {
+        this(p, null);
+    }
+
+    /**
+     * @param p the project into which translation units are imported
+     * @param theIndex the index of the model of the import session, or null
+     *            for the modeler to build it when needed
+     * @throws ProfileException if the C++ profile can't be created
+     */
+    ModelerImpl(Project p, ModelIndex theIndex) throws ProfileException {
         project = p;
+        index = theIndex;
         List<Profile> projectProfiles = 
             project.getProfileConfiguration().getProfiles();
         Profile cppProfile = null;
@@ -130,6 +147,20 @@ public class ModelerImpl implements Modeler {
      * @see org.argouml.language.cpp.reveng.Modeler#beginTranslationUnit()
      */
     public void beginTranslationUnit() {
+        // the modeler is reused for the translation units of an import, so,
+        // the state left by the previous one - which may have failed to
+        // parse - is discarded
+        contextStack.clear();
+        contextAccessSpecifier = null;
+        memberDeclarationCount = 0;
+        compoundStatementCount = 0;
+        ignoreableFunctionDefinition = false;
+        attributeModeler = null;
+        operationModeler = null;
+        typedefModeler = null;
+        memberModeler = null;
+        baseSpecifierModeler = null;
+        xtorModeler = null;
         newElements = new HashSet();
         contextStack.push(getModel());
     }
@@ -159,6 +190,7 @@ public class ModelerImpl implements Modeler {
                 ns = Model.getModelManagementFactory().buildPackage(nsName);
                 newElements.add(ns);
                 getCoreHelper().setNamespace(ns, parentNs);
+                getIndex().addNamespace(ns);
             }
             contextStack.push(ns);
         }
@@ -190,24 +222,11 @@ public class ModelerImpl implements Modeler {
      * @return the namespace if it exists, <code>null</code> otherwise.
      */
     private Object findNamespace(String nsName, Object parentNs) {
-        Collection nss =
-	    Model.getModelManagementHelper().getAllNamespaces(getModel());
-        Iterator it = nss.iterator();
-        Object ns = null;
-        while (it.hasNext()) {
-            Object tmpNs = it.next();
-            if (nsName.equals(getFacade().getName(tmpNs))) {
-                // NOTE: equality by reference may be deceiving if the
-                // implementation uses proxies - not likely that different
-                // proxies are used, so at least we should be comparing the
-                // references of the same proxy object!
-                if (getFacade().getNamespace(tmpNs) == parentNs) {
-                    ns = tmpNs;
-                    break;
-                }
-            }
-        }
-        return ns;
+        // NOTE: equality by reference may be deceiving if the
+        // implementation uses proxies - not likely that different
+        // proxies are used, so at least we should be comparing the
+        // references of the same proxy object!
+        return getIndex().findNamespace(nsName, parentNs);
     }
     
     private Object model;
@@ -217,13 +236,28 @@ public class ModelerImpl implements Modeler {
      * @return the user model
      */
     private Object getModel() {
-        if (model != null) {
-            return model;
+        if (model == null) {
+            model = index != null ? index.getModel()
+                : getEditableModel(getProject());
         }
-        for (Object userModel : getProject().getUserDefinedModelList()) {
+        return model;
+    }
+
+    private ModelIndex getIndex() {
+        if (index == null) {
+            index = new ModelIndex(getModel());
+        }
+        return index;
+    }
+
+    /**
+     * @param p the project
+     * @return the first editable user model of the project
+     */
+    static Object getEditableModel(Project p) {
+        for (Object userModel : p.getUserDefinedModelList()) {
             if (!getModelManagementHelper().isReadOnly(userModel)) {
-                model = userModel;
-                return model;
+                return userModel;
             }
         }
         throw new IllegalStateException("An editable user model wasn't found!");
@@ -266,6 +300,7 @@ public class ModelerImpl implements Modeler {
                 cls = getCoreFactory().buildClass(identifier, ns);
                 profile.applyCppClassStereotype(cls);
                 newElements.add(cls);
+                getIndex().addClass(cls);
             }
             contextStack.push(cls);
             if (CPPvariables.OT_CLASS.equals(oType)) {
@@ -285,6 +320,26 @@ public class ModelerImpl implements Modeler {
         }
     }
 
+    /*
+     * @see org.argouml.language.cpp.reveng.Modeler#classSourceFile(java.lang.String)
+     */
+    public void classSourceFile(String filename) {
+        if (!ignore()) {
+            Object cls = contextStack.peek();
+            assert getFacade().isAClass(cls) : "The context (\""
+                + getFacade().getName(cls) + "\") isn't a class!";
+            String[] dataValues = new String[] {filename};
+            Object tv = getFacade().getTaggedValue(cls, TV_NAME_SOURCE_FILE);
+            if (tv == null) {
+                tv = getExtensionMechanismsFactory().buildTaggedValue(
+                    profile.getSourceFileTagDefinition(), dataValues);
+                getExtensionMechanismsHelper().addTaggedValue(cls, tv);
+            } else {
+                getExtensionMechanismsHelper().setDataValues(tv, dataValues);
+            }
+        }
+    }
+
     /**
      * Find a class within the given namespace that has the given identifier.
      *
@@ -292,16 +347,8 @@ public class ModelerImpl implements Modeler {
      * @param ns namespace to look in
      * @return the class if found, null otherwise
      */
-    private static Object findClass(String identifier, Object ns) {
-        Collection classes = getCoreHelper().getAllClasses(ns);
-        Iterator it = classes.iterator();
-        while (it.hasNext()) {
-            Object candidateClass = it.next();
-            if (Model.getFacade().getName(candidateClass).equals(identifier)) {
-                return candidateClass;
-            }
-        }
-        return null;
+    private Object findClass(String identifier, Object ns) {
+        return getIndex().findClass(identifier, ns);
     }
 
     /*
@@ -345,7 +392,8 @@ public class ModelerImpl implements Modeler {
     public void beginFunctionDeclaration() {
         if (!ignore()) {
             operationModeler = new OperationModeler(contextStack.peek(), 
-                    contextAccessSpecifier, getVoid(), false, profile);
+                    contextAccessSpecifier, getVoid(), false, profile,
+                    getIndex().getOperationIndex());
             contextStack.push(operationModeler.getOperation());
         }
     }
@@ -435,20 +483,30 @@ public class ModelerImpl implements Modeler {
      * delegates the call to ArgoUML helper method, but, first takes
      * care of C++ specific issues, such as pointer and reference
      * stripping and buit-in types which shouldn't be created as
-     * classes (the way ArgoUML does), but, as DataType.
+     * classes (the way ArgoUML does), but, as DataType. The types
+     * are cached for the import session, so that repeated references
+     * to the same type name don't search the model again.
      *
      * @param typeName the name of the type
      * @return A model element that represents the given type
      */
     private Object findOrCreateType(String typeName) {
-        Object theType = null;
+        Object theType = getIndex().getType(typeName);
+        if (theType != null) {
+            return theType;
+        }
         List taggedValues = new LinkedList();
         processPtrOperators(typeName, taggedValues);
         if (profile.isBuiltIn(typeName)) {
             theType = profile.getBuiltIn(typeName);
         } else {
             theType = getProject().findType(typeName.toString(), true);
+            if (getFacade().isAClass(theType)) {
+                // it may have been created, so, keep the index up to date
+                getIndex().addClass(theType);
+            }
         }
+        getIndex().putType(typeName, theType);
         return theType;
     }
 
@@ -856,6 +914,7 @@ public class ModelerImpl implements Modeler {
                 generalization = getUmlFactory().buildConnection(
                         getMetaTypes().getGeneralization(), child, null, 
                         parent, null, null, null);
+                getIndex().getOperationIndex().generalizationAdded();
             } catch (IllegalModelElementConnectionException e) {
                 LOG.severe("Exception while creating generalization, " + e);
                 throw new RuntimeException(e);
@@ -922,7 +981,7 @@ public class ModelerImpl implements Modeler {
             public XtorModeler create(Object owner, Object visibility,
                     Object returnType, boolean ignorable) {
                 return new CtorModeler(owner, visibility, returnType,
-                        ignorable, profile);
+                        ignorable, profile, getIndex().getOperationIndex());
             }
         };
         beginXtor(modelerCreator);
@@ -936,7 +995,7 @@ public class ModelerImpl implements Modeler {
             public XtorModeler create(Object owner, Object visibility,
                     Object returnType, boolean ignorable) {
                 return new DtorModeler(owner, visibility, returnType,
-                        ignorable, profile);
+                        ignorable, profile, getIndex().getOperationIndex());
             }
         };
         beginXtor(modelerCreator);
@@ -0,0 +1,141 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the {@link Modeler} callbacks issued by the parser of a translation
+ * unit, so that they may be replayed later against the real modeler.
+ *
+ * This allows the lexing and parsing of several translation units to run in
+ * worker threads, while the model - which isn't thread safe - is only touched
+ * by the thread that replays the recordings, in the order of the files.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class ModelerRecorder implements InvocationHandler {
+
+    /**
+     * The recorded calls, in the order in which they were made.
+     */
+    private final List<Call> calls = new ArrayList<Call>();
+
+    /**
+     * The proxy through which the parser will call this recorder.
+     */
+    private final Modeler proxy = (Modeler) Proxy.newProxyInstance(
+        Modeler.class.getClassLoader(), new Class[] {Modeler.class}, this);
+
+    /**
+     * @return the {@link Modeler} which records the calls made to it
+     */
+    Modeler getModeler() {
+        return proxy;
+    }
+
+    /**
+     * @return the number of calls recorded so far
+     */
+    int size() {
+        return calls.size();
+    }
+
+    public Object invoke(Object theProxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(theProxy, method, args);
+        }
+        if ("getNewElements".equals(method.getName())) {
+            // the recorder doesn't create model elements
+            return Collections.EMPTY_LIST;
+        }
+        calls.add(new Call(method, copyArgs(args)));
+        return null;
+    }
+
+    /**
+     * Replay the recorded calls into the given modeler.
+     *
+     * @param modeler the modeler into which the calls will be made
+     */
+    void replay(Modeler modeler) {
+        for (Call call : calls) {
+            try {
+                call.method.invoke(modeler, call.args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private Object invokeObjectMethod(Object theProxy, Method method,
+            Object[] args) {
+        String name = method.getName();
+        if ("equals".equals(name)) {
+            return Boolean.valueOf(theProxy == args[0]);
+        } else if ("hashCode".equals(name)) {
+            return Integer.valueOf(System.identityHashCode(theProxy));
+        }
+        return "ModelerRecorder with " + calls.size() + " calls";
+    }
+
+    /**
+     * The parser may reuse the lists it passes to the modeler, so these are
+     * copied for the replay to see the values at the time of the call.
+     */
+    private static Object[] copyArgs(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] copy = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof List) {
+                copy[i] = new ArrayList((List) args[i]);
+            } else {
+                copy[i] = args[i];
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * A recorded call.
+     */
+    private static class Call {
+        private final Method method;
+
+        private final Object[] args;
+
+        Call(Method theMethod, Object[] theArgs) {
+            method = theMethod;
+            args = theArgs;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import static org.argouml.model.Model.getFacade;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Index of the operations of the classifiers by signature, used by the
+ * {@link OperationModeler} to find duplicate operations and the operations
+ * that an operation overrides, without walking all the operations of the
+ * classifiers each time.
+ *
+ * The signature of an operation is made of the name of the operation and the
+ * names of its parameters, since these are what
+ * {@link OperationModeler#finish()} always compared.
+ *
+ * The operations of a classifier are indexed the first time the classifier is
+ * looked up, and after that the index must be kept up to date by calling
+ * {@link #addOperation(Object, Object)} for each new operation and
+ * {@link #generalizationAdded()} for each new generalization.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class OperationIndex {
+
+    /**
+     * The operations by signature, by classifier.
+     */
+    private final Map<Object, Map<String, Object>> operations =
+        new IdentityHashMap<Object, Map<String, Object>>();
+
+    /**
+     * The memoized results of
+     * {@link #hasNonLeafBaseOperation(String, Object)}, by classifier, by
+     * signature.
+     */
+    private final Map<String, Map<Object, Boolean>> nonLeafBaseOperations =
+        new HashMap<String, Map<Object, Boolean>>();
+
+    /**
+     * Compute the signature of an operation. Since it depends on the name
+     * and parameters of the operation, it must be computed when these are
+     * set.
+     *
+     * @param operation the operation
+     * @return the signature of the operation
+     */
+    static String getSignature(Object operation) {
+        StringBuilder signature = new StringBuilder();
+        signature.append(getFacade().getName(operation)).append('(');
+        for (Object parameter : getFacade().getParametersList(operation)) {
+            String name = getFacade().getName(parameter);
+            // a C++ identifier is never "?", so, it stands for no name
+            signature.append(name == null ? "?" : name).append(',');
+        }
+        return signature.append(')').toString();
+    }
+
+    /**
+     * Find an operation of a classifier by signature.
+     *
+     * @param classifier the classifier
+     * @param signature the signature of the operation
+     * @return the first operation of the classifier with the given signature
+     *         or null if there is none
+     */
+    Object findOperation(Object classifier, String signature) {
+        return getOperations(classifier).get(signature);
+    }
+
+    /**
+     * Add an operation to the index, unless the classifier already has an
+     * operation with the same signature.
+     *
+     * @param classifier the owner of the operation
+     * @param operation the new operation
+     */
+    void addOperation(Object classifier, Object operation) {
+        String signature = getSignature(operation);
+        Map<String, Object> classifierOperations = getOperations(classifier);
+        if (!classifierOperations.containsKey(signature)) {
+            classifierOperations.put(signature, operation);
+            // the operation might be a base operation of any classifier
+            nonLeafBaseOperations.remove(signature);
+        }
+    }
+
+    /**
+     * Must be called when a generalization is created, since the base
+     * operations of the specific classifier and of its own specializations
+     * change.
+     */
+    void generalizationAdded() {
+        nonLeafBaseOperations.clear();
+    }
+
+    /**
+     * Check if there is a non leaf operation with the given signature in the
+     * base classes of clazz. The search in each branch of the hierarchy
+     * stops at the first operation with the signature.
+     *
+     * @param signature the signature of the operation
+     * @param clazz the class which bases are searched
+     * @return true if there is a base operation which isn't leaf
+     */
+    boolean hasNonLeafBaseOperation(String signature, Object clazz) {
+        Map<Object, Boolean> results = nonLeafBaseOperations.get(signature);
+        if (results == null) {
+            results = new IdentityHashMap<Object, Boolean>();
+            nonLeafBaseOperations.put(signature, results);
+        }
+        Boolean result = results.get(clazz);
+        if (result == null) {
+            result = Boolean.valueOf(
+                searchNonLeafBaseOperation(signature, clazz));
+            results.put(clazz, result);
+        }
+        return result.booleanValue();
+    }
+
+    private boolean searchNonLeafBaseOperation(String signature,
+            Object clazz) {
+        for (Object generalization : getFacade().getGeneralizations(clazz)) {
+            Object base = getFacade().getGeneral(generalization);
+            Object baseOper = findOperation(base, signature);
+            if (baseOper != null) {
+                return !getFacade().isLeaf(baseOper);
+            }
+            // we need to go higher in the class hierarchy because the
+            // operation may be declared there
+            if (hasNonLeafBaseOperation(signature, base)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, Object> getOperations(Object classifier) {
+        Map<String, Object> classifierOperations = operations.get(classifier);
+        if (classifierOperations == null) {
+            classifierOperations = new HashMap<String, Object>();
+            for (Object operation : getFacade().getOperations(classifier)) {
+                String signature = getSignature(operation);
+                if (!classifierOperations.containsKey(signature)) {
+                    classifierOperations.put(signature, operation);
+                }
+            }
+            operations.put(classifier, classifierOperations);
+        }
+        return classifierOperations;
+    }
+}
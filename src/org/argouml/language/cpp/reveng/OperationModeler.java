@@ -42,8 +42,6 @@ import static org.argouml.model.Model.getCoreHelper;
 import static org.argouml.model.Model.getCoreFactory;
 import static org.argouml.model.Model.getFacade;
 
-import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 import org.argouml.language.cpp.profile.ProfileCpp;
@@ -57,6 +55,7 @@ import org.argouml.language.cpp.profile.ProfileCpp;
 class OperationModeler extends MemberModeler {
     private Object oper;
     private final boolean ignorable;
+    private final OperationIndex operationIndex;
     
     boolean isIgnorable() {
         return ignorable;
@@ -70,9 +69,11 @@ class OperationModeler extends MemberModeler {
     }
 
     OperationModeler(Object theParent, Object visibility, Object returnType, 
-            boolean ignore, ProfileCpp theProfile) {
+            boolean ignore, ProfileCpp theProfile,
+            OperationIndex theOperationIndex) {
         super(theParent, visibility, theProfile);
         ignorable = ignore;
+        operationIndex = theOperationIndex;
         if (!ignorable) { 
             oper = buildOperation(getOwner(), returnType);
             getCoreHelper().setLeaf(oper, true);
@@ -99,103 +100,32 @@ class OperationModeler extends MemberModeler {
      */
     void finish() {
         if (!isIgnorable()) {
+            String signature = OperationIndex.getSignature(oper);
             if (getFacade().isLeaf(oper) 
-                && hasNonLeafBaseOperation(oper, getOwner())) {
+                && operationIndex.hasNonLeafBaseOperation(signature,
+                    getOwner())) {
                 getCoreHelper().setLeaf(oper, false);
             }
-            removeOperationIfDuplicate(oper);
+            removeOperationIfDuplicate(oper, signature);
         }
     }
 
-    boolean hasNonLeafBaseOperation(Object operation, Object clazz) {
-        for (Object generalization : getFacade().getGeneralizations(clazz)) {
-            Object base = getFacade().getGeneral(generalization);
-            for (Object baseOper : getFacade().getOperations(base)) {
-                if (getFacade().getName(operation).equals(
-                        getFacade().getName(baseOper))
-                    && equalParameters(operation, baseOper)) {
-                    return !getFacade().isLeaf(baseOper);
-                }
-            }
-            // we need to go higher in the class hierarchy because the  
-            // operation may be declared there
-            if (hasNonLeafBaseOperation(operation, base)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Check if the given operation is a duplicate of other already existing
-     * operation and if so remove it.
+     * operation and if so remove it, otherwise, index it.
      *
      * @param operation the operation to be checked
+     * @param signature the signature of the operation
      */
-    void removeOperationIfDuplicate(Object operation) {
-        for (Object possibleDuplicate : getFacade().getOperations(getOwner()))
-        {
-            if (operation != possibleDuplicate
-                && getFacade().getName(operation).equals(
-                    getFacade().getName(possibleDuplicate))) {
-                if (equalParameters(operation, possibleDuplicate)) {
-                    getCoreHelper().removeFeature(getOwner(), operation);
-                }
-            }
+    void removeOperationIfDuplicate(Object operation, String signature) {
+        Object existing = operationIndex.findOperation(getOwner(), signature);
+        if (existing == null) {
+            operationIndex.addOperation(getOwner(), operation);
+        } else if (existing != operation) {
+            getCoreHelper().removeFeature(getOwner(), operation);
         }
     }
 
-    /**
-     * Compare the parameters of two operations.
-     *
-     * @param oper1 left hand side operation
-     * @param oper2 right hand side operation
-     * @return true if the parameters are equal - the same types given in the
-     *         same order
-     */
-    private boolean equalParameters(Object oper1, Object oper2) {
-        List parameters1 = getFacade().getParametersList(oper1);
-        List parameters2 = getFacade().getParametersList(oper2);
-        if (parameters1.size() == parameters2.size()) {
-            Iterator it1 = parameters1.iterator();
-            Iterator it2 = parameters2.iterator();
-            while (it1.hasNext()) {
-                Object parameter1 = it1.next();
-                Object parameter2 = it2.next();
-                if (!equalParameter(parameter1, parameter2)) {
-                    return false;
-                }
-            }
-        }
-        else {
-            return false;
-        }
-        return true;
-    }
-    
-    private boolean equalParameter(Object parameter1, Object parameter2) {
-        if (getFacade().getName(parameter1) != null 
-            && getFacade().getName(parameter1).equals(
-                getFacade().getName(parameter2))) {
-            return equalTaggedValues(
-                getFacade().getTaggedValuesCollection(parameter1), 
-                getFacade().getTaggedValuesCollection(parameter2));
-        }
-        if (getFacade().getName(parameter1) == null 
-            && getFacade().getName(parameter2) == null) {
-            return equalTaggedValues(
-                getFacade().getTaggedValuesCollection(parameter1), 
-                getFacade().getTaggedValuesCollection(parameter2));
-        }
-        return false;
-    }
-    
-    private boolean equalTaggedValues(Collection taggedValues1, 
-        Collection taggedValues2) {
-        // FIXME: TODO
-        return true;
-    }
-    
     void declarationSpecifiers(List declSpecs) {
         if (declSpecs.contains("virtual")) {
             getCoreHelper().setLeaf(oper, false);
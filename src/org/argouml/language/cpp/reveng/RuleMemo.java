@@ -0,0 +1,170 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memo of the outcomes of the parser rules while guessing, by rule and by the
+ * index of the token at which the rule starts - i.e., packrat parsing of the
+ * syntactic predicates. When several syntactic predicates of a decision start
+ * with the same rule, e.g., <code>declaration_specifiers</code>, the rule is
+ * parsed once and the other guesses skip to where it ended, or fail right
+ * away.
+ *
+ * The parser tells the memo when a memoized rule starts and ends while
+ * guessing. The rules that didn't end when a guess is rewound are the ones
+ * that failed, since the parser has no exception handlers besides those of
+ * the syntactic predicates.
+ *
+ * Besides the end of a rule, the memo keeps whether the rule cleared the type
+ * declaration flag of the parser, which is the only state that the parser
+ * changes while guessing, so that a skipped rule changes it as well.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class RuleMemo {
+
+    /**
+     * The end of a rule that failed.
+     */
+    static final int FAILED = -1;
+
+    private Map<Long, Outcome> outcomes = new HashMap<Long, Outcome>();
+
+    /**
+     * The memoized rules being parsed, from the outermost, as the rule, the
+     * index of the first token and the count of type declaration flag
+     * clearings at the start.
+     */
+    private final List<int[]> started = new ArrayList<int[]>();
+
+    private int hits;
+
+    /**
+     * Get the outcome of a rule.
+     *
+     * @param rule the rule
+     * @param index the index of the token at which the rule starts
+     * @return the outcome or null if it isn't known
+     */
+    Outcome get(int rule, int index) {
+        Outcome outcome = outcomes.get(key(rule, index));
+        if (outcome != null) {
+            hits++;
+        }
+        return outcome;
+    }
+
+    /**
+     * Must be called when a rule which outcome isn't known starts.
+     *
+     * @param rule the rule
+     * @param index the index of the token at which the rule starts
+     * @param clearings the count of type declaration flag clearings
+     */
+    void start(int rule, int index, int clearings) {
+        started.add(new int[] {rule, index, clearings});
+    }
+
+    /**
+     * Must be called when the innermost rule that was started ends.
+     *
+     * @param end the index of the token that follows the rule
+     * @param clearings the count of type declaration flag clearings
+     */
+    void end(int end, int clearings) {
+        put(started.remove(started.size() - 1), end, clearings);
+    }
+
+    /**
+     * @return the number of rules started, which is to be given back to
+     *         {@link #rewind(int, int)}
+     */
+    int mark() {
+        return started.size();
+    }
+
+    /**
+     * Memoize the failure of the rules which were started, but, didn't end
+     * since the given mark.
+     *
+     * @param mark the value returned by {@link #mark()}
+     * @param clearings the count of type declaration flag clearings
+     */
+    void rewind(int mark, int clearings) {
+        while (started.size() > mark) {
+            put(started.remove(started.size() - 1), FAILED, clearings);
+        }
+    }
+
+    /**
+     * Forget the memoized outcomes, which must be done when the state of the
+     * parser on which the rules depend changes.
+     */
+    void clear() {
+        if (!outcomes.isEmpty()) {
+            outcomes = new HashMap<Long, Outcome>();
+        }
+    }
+
+    /**
+     * @return the number of times a rule wasn't parsed again
+     */
+    int getHits() {
+        return hits;
+    }
+
+    private void put(int[] start, int end, int clearings) {
+        outcomes.put(key(start[0], start[1]),
+            new Outcome(end, clearings != start[2]));
+    }
+
+    private static Long key(int rule, int index) {
+        return Long.valueOf(((long) index << 8) | rule);
+    }
+
+    /**
+     * The outcome of a rule.
+     */
+    static class Outcome {
+        private final int end;
+
+        private final boolean clearsTypeDeclaration;
+
+        Outcome(int theEnd, boolean clears) {
+            end = theEnd;
+            clearsTypeDeclaration = clears;
+        }
+
+        /**
+         * @return the index of the token that follows the rule or
+         *         {@link RuleMemo#FAILED}
+         */
+        int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return true if the type declaration flag was cleared
+         */
+        boolean clearsTypeDeclaration() {
+            return clearsTypeDeclaration;
+        }
+    }
+}
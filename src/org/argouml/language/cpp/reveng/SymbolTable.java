@@ -0,0 +1,240 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The symbols that the parser knows, i.e., the names of the types, by name,
+ * with the kind of each - one of the <code>OT_*</code> constants of
+ * {@link CPPvariables}.
+ *
+ * The symbols are declared in scopes, which the parser enters and exits. When
+ * a scope is exited, its symbols are forgotten, and the symbols which they
+ * hid are visible again. The parser uses scopes for the compound statements
+ * and for the template parameters. A template parameters scope only holds
+ * the template parameters, the other symbols being declared in the enclosing
+ * scope, as, e.g., the name of a class template. The members of namespaces
+ * and classes are declared in the enclosing scope too, since the parser
+ * doesn't resolve qualified names, using directives or the scopes of out of
+ * line member definitions.
+ *
+ * A symbol table belongs to a single parser, therefore, it isn't thread
+ * safe.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class SymbolTable {
+
+    /**
+     * The visible symbols by name.
+     */
+    private final Map<String, Symbol> symbols = new HashMap<String, Symbol>();
+
+    /**
+     * The scopes, from the outermost, which is never exited.
+     */
+    private final List<Scope> scopes = new ArrayList<Scope>();
+
+    private int version;
+
+    /**
+     * Create a symbol table with the outermost scope only.
+     */
+    SymbolTable() {
+        scopes.add(new Scope(false));
+    }
+
+    /**
+     * Get the kind of a symbol.
+     *
+     * @param name the name of the symbol
+     * @return the kind of the visible symbol or null if there is none
+     */
+    String get(String name) {
+        Symbol symbol = symbols.get(name);
+        return symbol == null ? null : symbol.kind;
+    }
+
+    /**
+     * @param name the name of the symbol
+     * @return true if there is a visible symbol with the given name
+     */
+    boolean containsKey(String name) {
+        return symbols.containsKey(name);
+    }
+
+    /**
+     * Declare a symbol in the innermost scope which isn't a template
+     * parameters scope, hiding any symbol with the same name of the enclosing
+     * scopes.
+     *
+     * @param name the name of the symbol
+     * @param kind the kind of the symbol
+     */
+    void put(String name, String kind) {
+        int depth = scopes.size() - 1;
+        while (scopes.get(depth).templateParameters) {
+            depth--;
+        }
+        declare(name, kind, depth);
+    }
+
+    /**
+     * Declare a template parameter in the current scope.
+     *
+     * @param name the name of the template parameter
+     * @param kind the kind of the template parameter
+     */
+    void putTemplateParameter(String name, String kind) {
+        declare(name, kind, scopes.size() - 1);
+    }
+
+    /**
+     * Enter a new scope.
+     */
+    void enterScope() {
+        scopes.add(new Scope(false));
+    }
+
+    /**
+     * Enter a new scope for the parameters of a template.
+     */
+    void enterTemplateScope() {
+        scopes.add(new Scope(true));
+    }
+
+    /**
+     * @return true if the current scope is the one of the parameters of a
+     *         template
+     */
+    boolean isInTemplateScope() {
+        return scopes.get(scopes.size() - 1).templateParameters;
+    }
+
+    /**
+     * Exit the current scope, forgetting its symbols. The outermost scope is
+     * never exited.
+     */
+    void exitScope() {
+        if (scopes.size() == 1) {
+            return;
+        }
+        int depth = scopes.size() - 1;
+        List<String> names = scopes.remove(depth).names;
+        for (String name : names) {
+            // the symbols of the innermost scope are the first of the chain
+            Symbol hidden = symbols.get(name).hidden;
+            if (hidden == null) {
+                symbols.remove(name);
+            } else {
+                symbols.put(name, hidden);
+            }
+        }
+        if (!names.isEmpty()) {
+            version++;
+        }
+    }
+
+    /**
+     * @return the number of scopes entered and not exited, including the
+     *         outermost
+     */
+    int getDepth() {
+        return scopes.size();
+    }
+
+    /**
+     * Exit the scopes entered after the given depth.
+     *
+     * @param depth the value of {@link #getDepth()} to return to
+     */
+    void exitScopes(int depth) {
+        while (scopes.size() > depth) {
+            exitScope();
+        }
+    }
+
+    /**
+     * @return a number which changes whenever the visible symbols change
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the symbols declared in the outermost scope, by name
+     */
+    Map<String, String> getOutermostSymbols() {
+        Map<String, String> outermost = new HashMap<String, String>();
+        for (String name : scopes.get(0).names) {
+            Symbol symbol = symbols.get(name);
+            while (symbol.depth > 0) {
+                symbol = symbol.hidden;
+            }
+            outermost.put(name, symbol.kind);
+        }
+        return outermost;
+    }
+
+    private void declare(String name, String kind, int depth) {
+        // the chain of symbols with the same name is kept from the innermost
+        // scope to the outermost
+        Symbol symbol = symbols.get(name);
+        if (symbol == null || symbol.depth <= depth) {
+            symbols.put(name, new Symbol(kind, depth, symbol));
+        } else {
+            while (symbol.hidden != null && symbol.hidden.depth > depth) {
+                symbol = symbol.hidden;
+            }
+            symbol.hidden = new Symbol(kind, depth, symbol.hidden);
+        }
+        scopes.get(depth).names.add(name);
+        version++;
+    }
+
+    /**
+     * A scope and the names of the symbols declared in it.
+     */
+    private static class Scope {
+        private final boolean templateParameters;
+
+        private final List<String> names = new ArrayList<String>();
+
+        Scope(boolean isTemplateParameters) {
+            templateParameters = isTemplateParameters;
+        }
+    }
+
+    /**
+     * A declaration of a symbol.
+     */
+    private static class Symbol {
+        private final String kind;
+
+        private final int depth;
+
+        private Symbol hidden;
+
+        Symbol(String theKind, int theDepth, Symbol theHidden) {
+            kind = theKind;
+            depth = theDepth;
+            hidden = theHidden;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The directories of the system headers, e.g., of the standard library, which
+ * declarations are parsed to learn their type names, but, aren't modeled.
+ *
+ * The parser tells whether a declaration comes from a system header by the
+ * file name of its first token, as given by the line markers of the
+ * preprocessed input.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+class SystemHeaders {
+
+    /**
+     * The modeler to which the declarations of the system headers are given,
+     * which ignores them.
+     */
+    static final Modeler IGNORING_MODELER = (Modeler) Proxy.newProxyInstance(
+        Modeler.class.getClassLoader(), new Class[] {Modeler.class},
+        new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getDeclaringClass() == Object.class) {
+                    if ("equals".equals(method.getName())) {
+                        return Boolean.valueOf(proxy == args[0]);
+                    }
+                    if ("hashCode".equals(method.getName())) {
+                        return Integer.valueOf(System.identityHashCode(proxy));
+                    }
+                    return "IGNORING_MODELER";
+                }
+                return null;
+            }
+        });
+
+    /**
+     * The absolute paths of the directories, ending with a separator.
+     */
+    private final List<String> roots = new ArrayList<String>();
+
+    /**
+     * Whether each file name seen so far is of a system header.
+     */
+    private final Map<String, Boolean> headers =
+        new HashMap<String, Boolean>();
+
+    /**
+     * @param directories the paths of the directories of the system headers
+     */
+    SystemHeaders(List<String> directories) {
+        for (String directory : directories) {
+            String root = new File(directory).getAbsolutePath();
+            if (!root.endsWith(File.separator)) {
+                root += File.separator;
+            }
+            roots.add(root);
+        }
+    }
+
+    /**
+     * @param filename the name of a file, as given by a line marker
+     * @return true if the file is within one of the directories of the system
+     *         headers
+     */
+    boolean contains(String filename) {
+        if (filename == null) {
+            return false;
+        }
+        Boolean contained = headers.get(filename);
+        if (contained == null) {
+            contained = Boolean.FALSE;
+            String path = new File(filename).getAbsolutePath();
+            for (String root : roots) {
+                if (path.startsWith(root)) {
+                    contained = Boolean.TRUE;
+                    break;
+                }
+            }
+            headers.put(filename, contained);
+        }
+        return contained.booleanValue();
+    }
+}
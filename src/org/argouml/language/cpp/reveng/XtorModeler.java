@@ -65,8 +65,10 @@ abstract class XtorModeler extends OperationModeler {
      * @param stereotypeName "create" for ctors and "destroy" for dtors.
      */
     XtorModeler(Object theParent, Object visibility, Object returnType, 
-            String stereotypeName, boolean ignorable, ProfileCpp profile) {
-        super(theParent, visibility, returnType, ignorable, profile);
+            String stereotypeName, boolean ignorable, ProfileCpp profile,
+            OperationIndex operationIndex) {
+        super(theParent, visibility, returnType, ignorable, profile,
+            operationIndex);
         if (isIgnorable()) {
             return;
         }
@@ -43,7 +43,8 @@ import static org.argouml.model.Model.getCoreFactory;
 import static org.argouml.model.Model.getCoreHelper;
 import static org.argouml.model.Model.getFacade;
 
-import org.argouml.language.cpp.profile.ProfileCpp;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Unit tests for AssociationEndHandler. 
@@ -57,6 +58,7 @@ public class TestAssociationEndHandler extends BaseTestGeneratorCpp {
     private Object association;
     private Object classAAssociationEnd;
     private Object classBAssociationEnd;
+    private Set<Object> pointerEnds = new HashSet<Object>();
 
     /**
      * The constructor.
@@ -83,11 +85,13 @@ public class TestAssociationEndHandler extends BaseTestGeneratorCpp {
         getCoreHelper().setAggregation1(classAAssociationEnd,
                 getAggregationKind().getComposite());
         AssociationEndHandler classAHandler = new AssociationEndHandler(
-                classAAssociationEnd);
+                classAAssociationEnd, pointerEnds);
         classAHandler.pre();
+        assertTrue(pointerEnds.isEmpty());
         assertTaggedValuesNumEquals(0, classAAssociationEnd);
         assertTaggedValuesNumEquals(0, classBAssociationEnd);
         classAHandler.post();
+        assertTrue(pointerEnds.isEmpty());
         assertTaggedValuesNumEquals(0, classAAssociationEnd);
         assertTaggedValuesNumEquals(0, classBAssociationEnd);
     }
@@ -96,13 +100,15 @@ public class TestAssociationEndHandler extends BaseTestGeneratorCpp {
         getCoreHelper().setAggregation1(classAAssociationEnd,
                 getAggregationKind().getComposite());
         AssociationEndHandler handler = new AssociationEndHandler(
-                classBAssociationEnd);
+                classBAssociationEnd, pointerEnds);
         handler.pre();
-        assertEquals("true", getFacade().getTaggedValueValue(
-                classAAssociationEnd, ProfileCpp.TV_NAME_POINTER));
-        assertTaggedValuesNumEquals(1, classAAssociationEnd);
+        assertEquals(1, pointerEnds.size());
+        assertTrue(pointerEnds.contains(classAAssociationEnd));
+        // the model isn't changed, as other generations may be reading it
+        assertTaggedValuesNumEquals(0, classAAssociationEnd);
         assertTaggedValuesNumEquals(0, classBAssociationEnd);
         handler.post();
+        assertTrue(pointerEnds.isEmpty());
         assertTaggedValuesNumEquals(0, classAAssociationEnd);
         assertTaggedValuesNumEquals(0, classBAssociationEnd);
     }
@@ -41,8 +41,10 @@ package org.argouml.language.cpp.generator;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
 import java.util.logging.Logger;
 
@@ -495,4 +497,117 @@ public class TestCppFileGeneration extends BaseTestGeneratorCpp {
     	setUpNamespaces(testName);
     	assertGenerateAClassFileWithNullTaggedValueTag(testName, getAClass());
     }
+
+    /**
+     * The files generated by several threads are the same as those generated
+     * sequentially, and their pathnames are returned in the same order.
+     *
+     * @throws IOException if something goes wrong with file access
+     */
+    public void testParallelGenerationIsSequential() throws IOException {
+        final String testName = "testParallelGenerationIsSequential";
+        setUpNamespaces(testName);
+        setUpOtherClassInOtherPackage();
+        createAClassOperationWithOtherClassAsParamAndReturn();
+        getGenerator().setHeaderGuardGUID(false);
+        List<Object> elements = new ArrayList<Object>();
+        elements.add(getAClass());
+        elements.add(otherClass);
+        for (int i = 0; i < 10; i++) {
+            Object cls = getFactory().buildClass("Class" + i, getPack());
+            buildOperation(cls, otherClass, "op" + i);
+            elements.add(cls);
+        }
+        genDir = Helper.setUpDir4Test(testName);
+        File sequentialDir = new File(genDir, "sequential");
+        File parallelDir = new File(genDir, "parallel");
+        int threads = getGenerator().getThreads();
+        List sequential;
+        List parallel;
+        try {
+            getGenerator().setThreads(1);
+            sequential = new ArrayList(getGenerator().generateFiles(elements,
+                sequentialDir.getPath(), false));
+            getGenerator().setThreads(4);
+            parallel = new ArrayList(getGenerator().generateFiles(elements,
+                parallelDir.getPath(), false));
+        } finally {
+            getGenerator().setThreads(threads);
+        }
+        assertEquals(2 * elements.size(), sequential.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            String sequentialPath = (String) sequential.get(i);
+            String parallelPath = (String) parallel.get(i);
+            assertEquals(sequentialPath.substring(
+                    sequentialDir.getPath().length()),
+                parallelPath.substring(parallelDir.getPath().length()));
+            assertEquals(
+                FileUtils.readFileToString(new File(sequentialPath))
+                    .replace(sequentialDir.getPath(), ""),
+                FileUtils.readFileToString(new File(parallelPath))
+                    .replace(parallelDir.getPath(), ""));
+        }
+    }
+
+    /**
+     * Generating again a file which content doesn't change leaves it
+     * untouched, so that the C++ project isn't rebuilt.
+     *
+     * @throws IOException if something goes wrong with file access
+     */
+    public void testUnchangedFileIsNotWritten() throws IOException {
+        genDir = Helper.setUpDir4Test("testUnchangedFileIsNotWritten");
+        getGenerator().setHeaderGuardGUID(false);
+        File header = generateFile(getAClass(), ".h");
+        long lastModified = header.lastModified() - 60 * 1000;
+        assertTrue(header.setLastModified(lastModified));
+        String content = FileUtils.readFileToString(header);
+
+        assertEquals(header, generateFile(getAClass(), ".h"));
+        assertEquals(lastModified, header.lastModified());
+        assertEquals(content, FileUtils.readFileToString(header));
+        File bakFile = new File(header.getPath() + ".bak");
+        assertFalse(bakFile.exists());
+
+        buildOperation(getAClass(), profile.getBuiltIn("void"), "bar");
+        assertEquals(header, generateFile(getAClass(), ".h"));
+        assertTrue(lastModified != header.lastModified());
+        assertTrue(FileUtils.readFileToString(header).indexOf("bar(") != -1);
+        assertEquals(content, FileUtils.readFileToString(bakFile));
+    }
+
+    /**
+     * A file which differs only by the date of the generation in its
+     * template isn't written, so that the files aren't all rewritten each
+     * day.
+     *
+     * @throws IOException some unexpected file access problem occurred
+     */
+    public void testFileWithOtherDateIsNotWritten() throws IOException {
+        genDir = Helper.setUpDir4Test("testFileWithOtherDateIsNotWritten");
+        File template = new File(genDir, "templates/header_template");
+        FileUtils.writeStringToFile(template,
+            "// |FILENAME| generated on |DATE|\n// (c) |YEAR|\n");
+        getGenerator().setHeaderGuardGUID(false);
+        File header = generateFile(getAClass(), ".h");
+        String content = FileUtils.readFileToString(header);
+        assertTrue(content.startsWith("// "
+            + Model.getFacade().getName(getAClass()) + ".h generated on "));
+        content = content.replaceFirst("generated on .*", "generated on Jan 1,"
+            + " 2000").replaceFirst("\\(c\\) .*", "(c) 2000");
+        FileUtils.writeStringToFile(header, content);
+        long lastModified = header.lastModified() - 60 * 1000;
+        assertTrue(header.setLastModified(lastModified));
+
+        assertEquals(header, generateFile(getAClass(), ".h"));
+        assertEquals(lastModified, header.lastModified());
+        assertEquals(content, FileUtils.readFileToString(header));
+
+        FileUtils.writeStringToFile(template,
+            "// |FILENAME| generated on |DATE| by |AUTHOR|\n");
+        assertEquals(header, generateFile(getAClass(), ".h"));
+        assertTrue(lastModified != header.lastModified());
+        assertTrue(FileUtils.readFileToString(header).indexOf(" by ") != -1);
+    }
 }
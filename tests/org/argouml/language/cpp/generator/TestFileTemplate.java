@@ -0,0 +1,115 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.generator;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the {@link FileTemplate} class.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+public class TestFileTemplate extends TestCase {
+
+    private static final String LINE_SEPARATOR =
+        System.getProperty("line.separator");
+
+    private File templateFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        templateFile = File.createTempFile("header_template", null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        templateFile.delete();
+        super.tearDown();
+    }
+
+    /**
+     * The first occurrence of each placeholder in a line is replaced by its
+     * value, unless this is empty.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testApply() throws Exception {
+        FileUtils.writeStringToFile(templateFile,
+            "// |FILENAME| |FILENAME|\n"
+            + "// (c) |YEAR| |AUTHOR| <|EMAIL|>, |DATE|\n"
+            + "\n");
+        FileTemplate template = FileTemplate.load(templateFile);
+        String[] values = {"A.h", "Jan 1, 2013", "2013", "jdoe", null};
+        assertEquals("// A.h |FILENAME|" + LINE_SEPARATOR
+            + "// (c) 2013 jdoe <|EMAIL|>, Jan 1, 2013" + LINE_SEPARATOR
+            + LINE_SEPARATOR, template.apply(values));
+    }
+
+    /**
+     * A placeholder which value is null matches any text within a line.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testMatch() throws Exception {
+        FileUtils.writeStringToFile(templateFile,
+            "// |FILENAME| |DATE| |AUTHOR|\n\n");
+        FileTemplate template = FileTemplate.load(templateFile);
+        String top = "// A.h Jan 1, 2000 |AUTHOR|" + LINE_SEPARATOR
+            + LINE_SEPARATOR;
+        String[] values = {"A.h", null, null, null, null};
+        values[FileTemplate.AUTHOR] = "";
+        assertEquals(top.length(), template.match(top + "class A;", values));
+        values[FileTemplate.AUTHOR] = "jdoe";
+        assertEquals(-1, template.match(top, values));
+        values[FileTemplate.AUTHOR] = "";
+        values[FileTemplate.FILENAME] = "B.h";
+        assertEquals(-1, template.match(top, values));
+        values[FileTemplate.FILENAME] = "A.h";
+        assertEquals(-1, template.match("// A.h Jan 1," + LINE_SEPARATOR
+            + " 2000 |AUTHOR|" + LINE_SEPARATOR + LINE_SEPARATOR, values));
+    }
+
+    /**
+     * The template is read in UTF-8, as the generated files are written.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testNonAsciiTemplate() throws Exception {
+        FileUtils.writeStringToFile(templateFile,
+            "// |FILENAME| \u00a9 J\u00fcrgen M\u00fcller\n", "UTF-8");
+        FileTemplate template = FileTemplate.load(templateFile);
+        String[] values = {"A.h", null, null, null, null};
+        assertEquals("// A.h \u00a9 J\u00fcrgen M\u00fcller" + LINE_SEPARATOR,
+            template.apply(values));
+    }
+
+    /**
+     * A template is out of date when its file changes.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testIsUpToDate() throws Exception {
+        FileUtils.writeStringToFile(templateFile, "// |FILENAME|\n");
+        FileTemplate template = FileTemplate.load(templateFile);
+        assertTrue(template.isUpToDate(templateFile));
+        FileUtils.writeStringToFile(templateFile, "// file |FILENAME|\n");
+        assertFalse(template.isUpToDate(templateFile));
+    }
+}
@@ -42,7 +42,10 @@ import static org.argouml.model.Model.getCoreHelper;
 import static org.argouml.model.Model.getMetaTypes;
 import static org.argouml.model.Model.getUmlFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 
 import junit.framework.Test;
@@ -444,4 +447,49 @@ public class TestGeneratorCpp extends BaseTestGeneratorCpp {
         }
         assertTrue(code.matches(re));
     }
+
+    /**
+     * The generator keeps the state of each invocation apart, so, files
+     * generated at the same time in several threads, while the notation of an
+     * operation is rendered, must be the same as when generated alone.
+     *
+     * @throws Exception if a thread is interrupted
+     */
+    public void testConcurrentGenerationsAreIdentical() throws Exception {
+        setUpInner();
+        final String header = getGenerator().generateH(getAClass());
+        final String source = getGenerator().generateCpp(getAClass());
+        final String operation =
+            getGenerator().generateOperation(getFooMethod(), false);
+        final List<String> failures =
+            Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread() {
+                public void run() {
+                    for (int j = 0; j < 20; j++) {
+                        if (!header.equals(
+                                getGenerator().generateH(getAClass()))) {
+                            failures.add("header");
+                        }
+                        if (!operation.equals(getGenerator()
+                                .generateOperation(getFooMethod(), false))) {
+                            failures.add("operation");
+                        }
+                        if (!source.equals(
+                                getGenerator().generateCpp(getAClass()))) {
+                            failures.add("source");
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.EMPTY_LIST, failures);
+    }
 }
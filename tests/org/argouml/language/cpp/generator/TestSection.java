@@ -0,0 +1,135 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.generator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the merge of the preserved sections of {@link Section}.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+public class TestSection extends TestCase {
+
+    private static final String LINE_SEPARATOR =
+        System.getProperty("line.separator");
+
+    private int useSect;
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        useSect = Section.getUseSect();
+        Section.setUseSect(Section.SECT_BRIEF);
+        dir = new File(System.getProperty("java.io.tmpdir"), "TestSection");
+        dir.mkdirs();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+        Section.setUseSect(useSect);
+        super.tearDown();
+    }
+
+    /**
+     * The content of the sections read replaces the generated one, and the
+     * sections which aren't in the generated text are output at the end of
+     * the source file only.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testMerge() throws Exception {
+        Section sect = new Section();
+        sect.read(new StringReader(section("foo", "    int i = 0;")
+            + section("bar", "    return;")));
+
+        String header = "class A {" + LINE_SEPARATOR
+            + section("foo", "") + "};" + LINE_SEPARATOR;
+        assertEquals("class A {" + LINE_SEPARATOR
+            + section("foo", "    int i = 0;") + "};",
+            sect.merge(header, "", false));
+
+        String source = "A::A()" + LINE_SEPARATOR;
+        assertEquals("A::A()/* lost code following: " + LINE_SEPARATOR
+            + section("bar", "    return;") + "*/",
+            sect.merge(source, "", true));
+    }
+
+    /**
+     * Merging without preserved sections gives the generated text.
+     */
+    public void testMergeWithoutSections() {
+        String text = "int a;" + LINE_SEPARATOR + section("foo", "    a = 1;")
+            + "int b;";
+        assertEquals(text, new Section().merge(text, "    ", true));
+    }
+
+    /**
+     * The non ASCII characters of the sections of a file written in UTF-8
+     * are kept, and so are those of a file in the platform encoding, which
+     * isn't valid UTF-8.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testNonAsciiSections() throws Exception {
+        String content = "    String s = \"Gr\u00f6\u00dfe: 3 \u20ac\";";
+        File existing = new File(dir, "a.cpp");
+        write(existing, section("foo", content).getBytes("UTF-8"));
+        File generated = new File(dir, "b.cpp");
+        write(generated, ("int a;" + LINE_SEPARATOR + section("foo", "")
+            + "int b;").getBytes("UTF-8"));
+        Section sect = new Section();
+        sect.read(existing.getPath());
+        sect.write(generated.getPath(), "", false);
+        assertEquals("int a;" + LINE_SEPARATOR + section("foo", content)
+            + "int b;", FileUtils.readFileToString(
+                new File(generated.getPath() + ".out"), "UTF-8"));
+
+        String latin1 = "    char s[] = \"Gr\u00f6\u00dfe\";";
+        byte[] bytes = section("foo", latin1).getBytes("ISO-8859-1");
+        write(existing, bytes);
+        sect = new Section();
+        sect.read(existing.getPath());
+        assertEquals("int a;" + LINE_SEPARATOR + new String(bytes) + "int b;",
+            sect.merge("int a;" + LINE_SEPARATOR + section("foo", "")
+                + "int b;", "", false));
+    }
+
+    private static void write(File f, byte[] bytes) throws IOException {
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String section(String id, String content) {
+        return Section.generateTop(id, "")
+            + (content.length() > 0 ? content + LINE_SEPARATOR : "")
+            + Section.generateBottom(id, "");
+    }
+}
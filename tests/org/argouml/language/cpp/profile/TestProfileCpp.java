@@ -150,6 +150,15 @@ public class TestProfileCpp extends TestCase {
         assertTrue(allModels.contains(getFacade().getRoot(tagDefinition)));
     }
     
+    public void testGetSourceFileTagDefinition() throws Exception {
+        Object tagDefinition = profile.getSourceFileTagDefinition();
+        assertNotNull(tagDefinition);
+        assertEquals(ProfileCpp.TV_NAME_SOURCE_FILE,
+            getFacade().getName(tagDefinition));
+        assertTrue(getFacade().getTagDefinitions(
+            profile.getCppClassStereotype()).contains(tagDefinition));
+    }
+    
     public void testApplyCppClassStereotype() throws Exception {
         profile.applyCppClassStereotype(aClass);
         Collection stereotypes = getFacade().getStereotypes(aClass);
@@ -256,6 +265,12 @@ public class TestProfileCpp extends TestCase {
         assertEquals("bla foo bla", 
                 ProfileCpp.trimAndEnsureOneSpaceOnlyBetweenTokens(
                     " bla\t\tfoo  bla   "));
+        assertEquals("unsigned long int", 
+                ProfileCpp.trimAndEnsureOneSpaceOnlyBetweenTokens(
+                    "unsigned \r\nlong\fint"));
+        String normalized = "long double";
+        assertSame(normalized, 
+                ProfileCpp.trimAndEnsureOneSpaceOnlyBetweenTokens(normalized));
     }
     
     /**
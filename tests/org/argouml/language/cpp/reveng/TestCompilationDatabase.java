@@ -0,0 +1,120 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the {@link CompilationDatabase} and {@link CompileCommand} classes.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+public class TestCompilationDatabase extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = new File(System.getProperty("java.io.tmpdir"),
+            "TestCompilationDatabase").getCanonicalFile();
+        write("lib1/config.h", "#define VALUE 1\n");
+        write("lib2/config.h", "#define VALUE 2\n");
+        write("a.cpp", "#include <config.h>\nint a = VALUE + EXTRA;\n"
+            + "#ifdef DEBUG\nint debug;\n#endif\n");
+        write("src/b.cpp", "#include \"config.h\"\nint b = VALUE + EXTRA;\n");
+        write("c.cpp", "int c;\n");
+        write("compile_commands.json", "[\n"
+            + "  { \"directory\": \"" + path(dir) + "\",\n"
+            + "    \"arguments\": [\"g++\", \"-c\", \"-Ilib1\", \"-D\","
+            + " \"EXTRA=3\", \"-DDEBUG\", \"-UDEBUG\", \"a.cpp\"],\n"
+            + "    \"file\": \"a.cpp\" },\n"
+            + "  { \"directory\": \"" + path(new File(dir, "src")) + "\",\n"
+            + "    \"command\": \"g++ -c -I ../lib2 '-DEXTRA=(4 + 1)'"
+            + " -o b.o b.cpp\",\n"
+            + "    \"file\": \"" + path(new File(dir, "src/b.cpp")) + "\" }\n"
+            + "]\n");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    /**
+     * The translation units of the database are preprocessed with the
+     * include directories and macros of their commands.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testPreprocessWithCommands() throws Exception {
+        CompilationDatabase database = new CompilationDatabase(
+            new File(dir, "compile_commands.json"));
+        assertEquals(2, database.getCommands().size());
+        assertNull("c.cpp isn't in the database.",
+            database.getCommand(new File(dir, "c.cpp")));
+
+        HeaderCache cache = new HeaderCache();
+        CompileCommand a = database.getCommand(new File(dir, "a.cpp"));
+        assertEquals("int a = 1 + 3;", normalize(cache.preprocess(a)));
+        CompileCommand b = database.getCommand(
+            new File(dir, "lib1/../src/b.cpp"));
+        assertEquals("int b = 2 + (4 + 1);", normalize(cache.preprocess(b)));
+        assertFalse("The units don't have the same include directories.",
+            a.getIncludeKey().equals(b.getIncludeKey()));
+    }
+
+    /**
+     * The include directories of <code>-isystem</code> are system headers.
+     */
+    public void testSystemRoots() {
+        CompileCommand command = new CompileCommand(new File(dir, "a.cpp"),
+            dir, Arrays.asList("-isystem", "/opt/include", "-Ilib1"));
+        assertEquals(Arrays.asList("/opt/include", "/usr/include"),
+            command.getSystemRoots(Collections.singletonList(
+                "/usr/include")));
+    }
+
+    /**
+     * A command line is split into arguments as the shell does.
+     */
+    public void testSplitCommand() {
+        assertEquals(Arrays.asList("cc", "-DA=\"x y\"", "-DB=it's", "a b.c",
+            "-I/a\\b"), CompilationDatabase.splitCommand(
+                "cc  -DA=\"\\\"x y\\\"\" -DB=it\\'s 'a b.c' \"-I/a\\b\""));
+    }
+
+    private void write(String name, String content) throws IOException {
+        FileUtils.writeStringToFile(new File(dir, name), content);
+    }
+
+    private static String path(File f) {
+        return f.getPath().replace("\\", "\\\\");
+    }
+
+    private static String normalize(String text) {
+        // without the line markers of the headers
+        return text.replaceAll("(?m)^#line .*$", "").replaceAll("\\s+", " ")
+            .trim();
+    }
+}
@@ -41,13 +41,22 @@ package org.argouml.language.cpp.reveng;
 /*REMOVE_END*/
 
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.easymock.MockControl;
 
+import antlr.Token;
+
 /**
  * Basic test of the C++ grammar. This should prove that the grammar generated 
  * parser works for very basic pre-processed files.
@@ -89,6 +98,28 @@ public class TestCppGrammar extends TestCase {
      * @throws Exception something went wrong...
      */
     public void testGrammarCallbacks2Modeler() throws Exception {
+        expectSimpleClassCallbacks();
+        modelerCtrl.replay();
+        
+        parseFile("SimpleClass.cpp");
+        modelerCtrl.verify();
+    }
+
+    /**
+     * When skipping function bodies, the grammar callbacks for
+     * SimpleClass.cpp must be the same, since its function body has no
+     * declarations in it.
+     * @throws Exception something went wrong...
+     */
+    public void testGrammarCallbacks2ModelerSkippingBodies() throws Exception {
+        expectSimpleClassCallbacks();
+        modelerCtrl.replay();
+        
+        parseFile("SimpleClass.cpp", true);
+        modelerCtrl.verify();
+    }
+
+    private void expectSimpleClassCallbacks() {
         modeler.beginTranslationUnit();
         
         modeler.enterNamespaceScope("pack");
@@ -130,11 +161,6 @@ public class TestCppGrammar extends TestCase {
         
         modeler.makeNamespaceAlias("pack", "p");
         modeler.endTranslationUnit();
-        
-        modelerCtrl.replay();
-        
-        parseFile("SimpleClass.cpp");
-        modelerCtrl.verify();
     }
 
     /**
@@ -143,8 +169,16 @@ public class TestCppGrammar extends TestCase {
      * @throws Exception something went wrong
      */
     public void testParseQuadratic() throws Exception {
-        // FIXME: this one still fails!
-        //parseFile("quadratic.i");
+        parseFile("quadratic.i");
+    }
+
+    /**
+     * Test parsing <code>quadratic.i</code> skipping the function bodies,
+     * which the parser then matches by their curly braces only.
+     * @throws Exception something went wrong
+     */
+    public void testParseQuadraticSkippingBodies() throws Exception {
+        parseFile("quadratic.i", true);
     }
 
     /**
@@ -174,6 +208,388 @@ public class TestCppGrammar extends TestCase {
         parseFile("DerivedFromAbstract.cxx");
     }
 
+    /**
+     * Test that the lexer numbers the lines and names the files of the tokens
+     * as given by the line markers of preprocessed input.
+     * @throws Exception something went wrong
+     */
+    public void testLineMarkers() throws Exception {
+        CPPLexer lexer = new CPPLexer(new StringReader(
+            "#line 10 \"dir\\\\a.h\"\nint x;\n# 3 \"b.h\" 1\n\nint y;\n"));
+        lexer.setFilename("unit.i");
+        Token token = lexer.nextToken();
+        assertEquals("int", token.getText());
+        assertEquals(10, token.getLine());
+        assertEquals("dir\\a.h", token.getFilename());
+        do {
+            token = lexer.nextToken();
+        } while (!"y".equals(token.getText()));
+        assertEquals(4, token.getLine());
+        assertEquals("b.h", token.getFilename());
+    }
+
+    /**
+     * Test that the lexer produces the same tokens when reading from a
+     * {@link CharSequenceInputBuffer} as when reading from a stream.
+     * @throws Exception something went wrong
+     */
+    public void testCharSequenceInput() throws Exception {
+        String fn = "quadratic.i";
+        StringBuilder text = new StringBuilder();
+        Reader reader = new InputStreamReader(
+            TestCppGrammar.class.getResourceAsStream(fn));
+        try {
+            char[] buffer = new char[4096];
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, n);
+            }
+        } finally {
+            reader.close();
+        }
+        CPPLexer streamLexer = new CPPLexer(
+            TestCppGrammar.class.getResourceAsStream(fn));
+        CPPLexer charSequenceLexer = new CPPLexer(
+            new CharSequenceInputBuffer(text));
+        Token expected;
+        do {
+            expected = streamLexer.nextToken();
+            Token actual = charSequenceLexer.nextToken();
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(expected.getLine(), actual.getLine());
+            assertEquals(expected.getColumn(), actual.getColumn());
+        } while (expected.getType() != Token.EOF_TYPE);
+    }
+
+    /**
+     * Test that keywords are recognized by the lexer, but, not identifiers
+     * which are prefixes or extensions of keywords, and that the compact
+     * token stream keeps a single copy of each distinct text and gives the
+     * same token object for the same index, up to the end of file.
+     * @throws Exception something went wrong
+     */
+    public void testKeywordsAndCompactTokenStream() throws Exception {
+        CompactTokenStream tokens = new CompactTokenStream(new CPPLexer(
+            new StringReader("namespace classy { class c; class d; }")));
+        int[] expectedTypes = {STDCTokenTypes.LITERAL_namespace,
+            STDCTokenTypes.ID, STDCTokenTypes.LCURLY,
+            STDCTokenTypes.LITERAL_class, STDCTokenTypes.ID,
+            STDCTokenTypes.SEMICOLON, STDCTokenTypes.LITERAL_class,
+            STDCTokenTypes.ID, STDCTokenTypes.SEMICOLON,
+            STDCTokenTypes.RCURLY, Token.EOF_TYPE};
+        assertEquals(expectedTypes.length, tokens.size());
+        for (int i = 0; i < expectedTypes.length; i++) {
+            CPPToken token = (CPPToken) tokens.nextToken();
+            assertEquals(expectedTypes[i], token.getType());
+            assertEquals(i, token.getIndex());
+        }
+        assertSame(tokens.getText(3), tokens.getText(6));
+        assertEquals("classy", tokens.getToken(1).getText());
+        assertSame(tokens.getToken(4), tokens.getToken(4));
+        assertSame(tokens.getToken(10), tokens.getToken(12));
+        assertEquals(Token.EOF_TYPE, tokens.getToken(12).getType());
+    }
+
+    /**
+     * The memoized results of the qualified item and template lookahead
+     * scans must be the same as those of the scans, and a memoized result
+     * must not survive the declaration of a type.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testLookaheadMemo() throws Exception {
+        String source = "A<B<int>, (1>2)>::C<D> x;";
+        CPPParser memoized = new CPPParser(new CompactTokenStream(
+            new CPPLexer(new StringReader(source))));
+        CPPParser scanning = new CPPParser(new CPPLexer(
+            new StringReader(source)));
+        for (String type : new String[] {"A", "B", "C", "D"}) {
+            memoized.symbols.put(type, CPPvariables.OT_CLASS);
+            scanning.symbols.put(type, CPPvariables.OT_CLASS);
+        }
+        for (int i = 0; i < 2; i++) {
+            assertEquals(CPPvariables.QI_TYPE, memoized.qualifiedItemIs(0));
+            assertEquals(scanning.qualifiedItemIs(0),
+                memoized.qualifiedItemIs(0));
+            assertEquals(scanning.skipTemplateQualifiers(2),
+                memoized.skipTemplateQualifiers(2));
+            assertEquals(scanning.skipTemplateQualifiers(4),
+                memoized.skipTemplateQualifiers(4));
+        }
+        assertEquals(0, scanning.getLookaheadMemoHits());
+        assertTrue(memoized.getLookaheadMemoHits() > 0);
+
+        CPPParser parser = new CPPParser(new CompactTokenStream(
+            new CPPLexer(new StringReader("a b;"))));
+        assertEquals(CPPvariables.QI_VAR, parser.qualifiedItemIs(0));
+        parser.symbols.put("a", CPPvariables.OT_TYPE_DEF);
+        assertEquals(CPPvariables.QI_TYPE, parser.qualifiedItemIs(0));
+    }
+
+    /**
+     * When memoizing the rules while guessing, the grammar callbacks for
+     * SimpleClass.cpp must be the same, while some guesses are saved.
+     * @throws Exception something went wrong...
+     */
+    public void testGrammarCallbacks2ModelerMemoizingGuesses()
+        throws Exception {
+        expectSimpleClassCallbacks();
+        modelerCtrl.replay();
+
+        CPPParser parser = parseMemoizingGuesses(new InputStreamReader(
+            TestCppGrammar.class.getResourceAsStream("SimpleClass.cpp")));
+        modelerCtrl.verify();
+        assertTrue(parser.getSavedGuesses() > 0);
+    }
+
+    /**
+     * Each level of parenthesis of an expression doubles the guesses of the
+     * parser, unless they are memoized.
+     * @throws Exception something went wrong...
+     */
+    public void testMemoizedGuessesOfNestedParentheses() throws Exception {
+        StringBuilder source = new StringBuilder("int x = ");
+        for (int i = 0; i < 40; i++) {
+            source.append('(');
+        }
+        source.append('1');
+        for (int i = 0; i < 40; i++) {
+            source.append(')');
+        }
+        source.append(";");
+        CPPParser parser = parseMemoizingGuesses(new StringReader(
+            source.toString()));
+        assertTrue(parser.getSavedGuesses() >= 40);
+    }
+
+    /**
+     * Memoizing the rules while guessing doesn't change the grammar
+     * callbacks of template heavy sources, where the memoized rules include
+     * the qualified names, base specifiers and member declarators.
+     * @throws Exception something went wrong...
+     */
+    public void testMemoizingGuessesKeepsCallbacks() throws Exception {
+        String[] files = {"quadratic.i", "DerivedFromAbstract.cxx"};
+        for (String fn : files) {
+            List<String> calls = new ArrayList<String>();
+            parseRecording(new InputStreamReader(
+                TestCppGrammar.class.getResourceAsStream(fn)), false, calls);
+            List<String> memoizedCalls = new ArrayList<String>();
+            CPPParser parser = parseRecording(new InputStreamReader(
+                TestCppGrammar.class.getResourceAsStream(fn)), true,
+                memoizedCalls);
+            assertTrue(fn, calls.size() > 0);
+            assertEquals(fn, calls, memoizedCalls);
+            assertTrue(fn, parser.getSavedGuesses() > 0);
+        }
+        String source = "namespace n { template <class T> class B { }; }\n"
+            + "template <class T, int N> class A : public n::B<T>,"
+            + " private n::B<int> {\n"
+            + "  n::B<T> *b, c[N], (*f)(n::B<int>);\n"
+            + "  A<T, N> &operator=(const A<T, N> &a);\n"
+            + "};\n"
+            + "class C : public A<int, 2> { A<C, (1 + 2)> a; };\n";
+        List<String> calls = new ArrayList<String>();
+        parseRecording(new StringReader(source), false, calls);
+        List<String> memoizedCalls = new ArrayList<String>();
+        CPPParser parser = parseRecording(new StringReader(source), true,
+            memoizedCalls);
+        assertTrue(calls.contains("baseSpecifier[n::B, false]"));
+        assertTrue(calls.contains("simpleTypeSpecifier[[n::B]]"));
+        assertEquals(calls, memoizedCalls);
+        assertTrue(parser.getSavedGuesses() > 0);
+    }
+
+    /**
+     * Parse, recording the grammar callbacks as strings.
+     */
+    private CPPParser parseRecording(Reader reader, boolean memoize,
+            final List<String> calls) throws Exception {
+        Modeler recorder = (Modeler) Proxy.newProxyInstance(
+            Modeler.class.getClassLoader(), new Class[] {Modeler.class},
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method,
+                        Object[] args) {
+                    calls.add(method.getName()
+                        + (args == null ? "" : Arrays.asList(args)));
+                    return null;
+                }
+            });
+        CPPParser parser = new CPPParser(new CompactTokenStream(
+            new CPPLexer(reader)));
+        parser.setMemoizeGuesses(memoize);
+        parser.translation_unit(recorder);
+        return parser;
+    }
+
+    /**
+     * The binary operators of all the precedence levels are parsed, while a
+     * template argument stops at the operators which bind looser than a
+     * shift.
+     * @throws Exception something went wrong...
+     */
+    public void testBinaryOperators() throws Exception {
+        CPPParser parser = new CPPParser(new CPPLexer(new StringReader(
+            "a || b && c | d ^ e & f != g == h < i > j <= k >= l << m >> n"
+            + " + o - p * q / r % s .* t ->* u ? v : w;")));
+        parser.constant_expression();
+        assertEquals(STDCTokenTypes.SEMICOLON, parser.LA(1));
+
+        parser = new CPPParser(new CPPLexer(new StringReader(
+            "1 + 2 * (3 > 4) << 5 >> 6 > x")));
+        parser.template_argument();
+        assertEquals(STDCTokenTypes.GREATERTHAN, parser.LA(1));
+        assertEquals(STDCTokenTypes.ID, parser.LA(2));
+    }
+
+    /**
+     * When parsing the outline only, the grammar callbacks for
+     * SimpleClass.cpp must be the same.
+     * @throws Exception something went wrong...
+     */
+    public void testGrammarCallbacks2ModelerOutline() throws Exception {
+        expectSimpleClassCallbacks();
+        modelerCtrl.replay();
+
+        CPPParser parser = new CPPParser(new CPPLexer(
+            TestCppGrammar.class.getResourceAsStream("SimpleClass.cpp")));
+        parser.setOutline(true);
+        parser.translation_unit(modeler);
+        modelerCtrl.verify();
+    }
+
+    /**
+     * When parsing the outline only, the expressions outside of the function
+     * bodies are skipped, even those which the grammar doesn't support, up to
+     * the comma which isn't nested in brackets or in the template argument
+     * list of a template name, or, for the default arguments of template
+     * parameters, up to the "&gt;" which isn't nested.
+     * @throws Exception something went wrong...
+     */
+    public void testOutlineSkipsExpressions() throws Exception {
+        modelerCtrl = MockControl.createNiceControl(Modeler.class);
+        modeler = (Modeler) modelerCtrl.getMock();
+        modeler.directDeclarator("v", false);
+        modeler.directDeclarator("w", false);
+        modeler.directDeclarator("x", false);
+        modeler.directDeclarator("y", false);
+        modeler.directDeclarator("a", false);
+        modeler.directDeclarator("b", false);
+        modeler.directDeclarator("c", false);
+        modeler.directDeclarator("d", false);
+        modeler.directDeclarator("p", false);
+        modeler.directDeclarator("q", false);
+        modelerCtrl.replay();
+
+        String source = "template <class T, class U> class P {};\n"
+            + "template <class T, int N> int g(int i, int j);\n"
+            + "int n[1 + sizeof(int)] = {1};\n"
+            + "int v = P<int, int>::f(a, ((1))) ? 2 : 3, w = {{1, 2}, 3};\n"
+            + "void f(int x = g<int, 2>(1, 2), int y = 0);\n"
+            + "template <int N = 3> class X { int a; }; int b;\n"
+            + "template <int N = (3)> class Y { int c; }; int d;\n"
+            + "void h(bool p = e < f, int q = k > l);\n";
+        CPPParser parser = new CPPParser(new CPPLexer(new StringReader(
+            source)));
+        parser.setOutline(true);
+        parser.translation_unit(modeler);
+        modelerCtrl.verify();
+    }
+
+    /**
+     * The declarations which the line markers place in a system header aren't
+     * given to the modeler, but, their type names are known afterwards. The
+     * other classes are given with the file of the line markers.
+     * @throws Exception something went wrong
+     */
+    public void testSystemHeadersNotModeled() throws Exception {
+        modeler.beginTranslationUnit();
+        modeler.beginClassDefinition(CPPvariables.OT_CLASS, "A");
+        modeler.classSourceFile("a.cpp");
+        modeler.beginMemberDeclaration();
+        List sts = new ArrayList(); sts.add("std::vector");
+        modeler.simpleTypeSpecifier(sts);
+        modeler.beginMemberDeclaratorList();
+        modeler.beginMemberDeclarator();
+        modeler.directDeclarator("v", false);
+        modeler.endMemberDeclarator();
+        modeler.endMemberDeclaratorList();
+        modeler.endMemberDeclaration();
+        modeler.beginMemberDeclaration();
+        List sts2 = new ArrayList(); sts2.add("size_type");
+        modeler.simpleTypeSpecifier(sts2);
+        modeler.beginMemberDeclaratorList();
+        modeler.beginMemberDeclarator();
+        modeler.directDeclarator("n", false);
+        modeler.endMemberDeclarator();
+        modeler.endMemberDeclaratorList();
+        modeler.endMemberDeclaration();
+        modeler.endClassDefinition();
+        modeler.endTranslationUnit();
+        modelerCtrl.replay();
+
+        String source = "#line 1 \"/usr/include/vector\" 1\n"
+            + "namespace std { class vector { int size() const; }; }\n"
+            + "typedef int size_type;\n"
+            + "#line 3 \"a.cpp\" 2\n"
+            + "class A { std::vector v; size_type n; };\n";
+        CPPParser parser = new CPPParser(new CompactTokenStream(
+            new CPPLexer(new StringReader(source))));
+        List<String> roots = new ArrayList<String>();
+        roots.add("/usr/include");
+        parser.setSystemIncludeRoots(roots);
+        parser.translation_unit(modeler);
+        modelerCtrl.verify();
+    }
+
+    /**
+     * The system headers are parsed as an outline, where the default argument
+     * of a template parameter ends at the "&gt;" of the template parameter
+     * list.
+     * @throws Exception something went wrong
+     */
+    public void testSystemHeaderWithDefaultTemplateArgument()
+        throws Exception {
+        modeler.beginTranslationUnit();
+        modeler.beginClassDefinition(CPPvariables.OT_CLASS, "A");
+        modeler.classSourceFile("a.cpp");
+        modeler.beginMemberDeclaration();
+        List sts = new ArrayList(); sts.add("size_type");
+        modeler.simpleTypeSpecifier(sts);
+        modeler.beginMemberDeclaratorList();
+        modeler.beginMemberDeclarator();
+        modeler.directDeclarator("n", false);
+        modeler.endMemberDeclarator();
+        modeler.endMemberDeclaratorList();
+        modeler.endMemberDeclaration();
+        modeler.endClassDefinition();
+        modeler.endTranslationUnit();
+        modelerCtrl.replay();
+
+        String source = "#line 1 \"/usr/include/array\" 1\n"
+            + "template <class T, int N = 3> class array { T a[N]; };\n"
+            + "template <int M = (2)> class bitset { };\n"
+            + "typedef int size_type;\n"
+            + "#line 3 \"a.cpp\" 2\n"
+            + "class A { size_type n; };\n";
+        CPPParser parser = new CPPParser(new CompactTokenStream(
+            new CPPLexer(new StringReader(source))));
+        List<String> roots = new ArrayList<String>();
+        roots.add("/usr/include");
+        parser.setSystemIncludeRoots(roots);
+        parser.translation_unit(modeler);
+        modelerCtrl.verify();
+    }
+
+    private CPPParser parseMemoizingGuesses(Reader reader) throws Exception {
+        CPPParser parser = new CPPParser(new CompactTokenStream(
+            new CPPLexer(reader)));
+        parser.setMemoizeGuesses(true);
+        parser.translation_unit(modeler);
+        return parser;
+    }
+
     /**
      * Parse a pre-processed C++ or C source file using the lexer and parser 
      * generated from the ANTLR CppParser4Java.g grammar. 
@@ -182,10 +598,16 @@ public class TestCppGrammar extends TestCase {
      * @throws Exception something went wrong
      */
     private void parseFile(String fn) throws Exception {
+        parseFile(fn, false);
+    }
+
+    private void parseFile(String fn, boolean skipFunctionBodies)
+        throws Exception {
         InputStream file2Parse = TestCppGrammar.class.getResourceAsStream(
             fn);
         CPPLexer lexer = new CPPLexer(file2Parse);
         CPPParser parser = new CPPParser(lexer);
+        parser.setSkipFunctionBodies(skipFunctionBodies);
         parser.translation_unit(modeler);
     }
 }
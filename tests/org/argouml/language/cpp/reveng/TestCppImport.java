@@ -60,12 +60,14 @@ import junit.framework.TestSuite;
 
 import org.apache.commons.io.CopyUtils;
 import org.apache.commons.io.FileUtils;
+import org.argouml.configuration.Configuration;
 import org.argouml.kernel.Project;
 import org.argouml.language.cpp.profile.ProfileCpp;
 import org.argouml.model.Model;
 import org.argouml.taskmgmt.ProgressEvent;
 import org.argouml.taskmgmt.ProgressMonitor;
 import org.argouml.uml.reveng.ImportSettings;
+import org.argouml.uml.reveng.SettingsTypes;
 
 /**
  * Tests the {@link CppImport} class.
@@ -445,6 +447,35 @@ public class TestCppImport extends TestCase {
         return srcFile;
     }
 
+    /**
+     * @param mes the model elements in which to search
+     * @param meName simple name of the ME
+     * @return the number of model elements with the given name
+     */
+    private int countModelElementsWithName(Collection mes, String meName) {
+        int count = 0;
+        for (Object me : mes) {
+            if (meName.equals(Model.getFacade().getName(me))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Write a source file to be reversed into the directory of the test.
+     *
+     * @param fn name of the source file
+     * @param content the content of the source file
+     * @return the <code>File</code> object of the source file
+     * @throws IOException if the file can't be written
+     */
+    private File writeSrcFile(String fn, String content) throws IOException {
+        File srcFile = new File(genDir, fn);
+        FileUtils.writeStringToFile(srcFile, content);
+        return srcFile;
+    }
+
     /**
      * Find in a <code>Collection</code> of model elements one with the
      * specified name.
@@ -658,6 +689,405 @@ public class TestCppImport extends TestCase {
         // TODO: check details on each operation
     }
 
+    /**
+     * Import two translation units with two parser threads and check that the
+     * model elements of both are there, as in a sequential import.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testParseFilesInParallel() throws Exception {
+        genDir = setUpDirectory4Test("testParseFilesInParallel");
+        Collection<File> files = new ArrayList<File>();
+        files.add(setupSrcFile4Reverse("SimpleClass.cpp"));
+        files.add(setupSrcFile4Reverse("DerivedFromAbstract.cxx"));
+        int threads = Configuration.getInteger(CppImport.KEY_IMPORT_THREADS,
+            1);
+        Configuration.setInteger(CppImport.KEY_IMPORT_THREADS, 2);
+        try {
+            cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+        } finally {
+            Configuration.setInteger(CppImport.KEY_IMPORT_THREADS, threads);
+        }
+
+        Collection classes = getCoreHelper().getAllClasses(getRootModel());
+        getModelElementAndAssertNotDuplicated(classes, "SimpleClass");
+        getModelElementAndAssertNotDuplicated(classes, "Base");
+        Object derivedClass =
+            getModelElementAndAssertNotDuplicated(classes, "Derived");
+        assertEquals(1, getFacade().getGeneralizations(derivedClass).size());
+    }
+
+    /**
+     * With the incremental import, a translation unit that didn't change
+     * since it was imported isn't parsed again, so, a model element that the
+     * user deleted in the mean time isn't recreated.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testIncrementalImportSkipsUnchangedUnit() throws Exception {
+        genDir = setUpDirectory4Test("testIncrementalImportSkipsUnchangedUnit");
+        Collection<File> files = new ArrayList<File>();
+        files.add(setupSrcFile4Reverse("SimpleClass.cpp"));
+        boolean incremental = Configuration.getBoolean(
+            CppImport.KEY_IMPORT_INCREMENTAL, false);
+        Configuration.setBoolean(CppImport.KEY_IMPORT_INCREMENTAL, true);
+        try {
+            cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+            String manifest = getFacade().getTaggedValueValue(getRootModel(),
+                ImportManifest.TV_NAME_IMPORT_MANIFEST);
+            assertTrue(manifest.contains("SimpleClass.cpp"));
+
+            Collection clss = getCoreHelper().getAllClasses(getRootModel());
+            Object simpleClass =
+                getModelElementAndAssertNotDuplicated(clss, "SimpleClass");
+            Object newAttr = getModelElementAndAssertNotDuplicated(
+                getCoreHelper().getAllAttributes(simpleClass), "newAttr");
+            Model.getUmlFactory().delete(newAttr);
+
+            Collection newElements =
+                cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+            assertTrue(newElements.isEmpty());
+            assertNull(findModelElementWithName(
+                getCoreHelper().getAllAttributes(simpleClass), "newAttr"));
+        } finally {
+            Configuration.setBoolean(CppImport.KEY_IMPORT_INCREMENTAL,
+                incremental);
+        }
+    }
+
+    /**
+     * The outline only import models the classes and their members, but,
+     * doesn't record the translation units in the manifest of the
+     * incremental import, so that a later import of the same units isn't
+     * skipped.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testOutlineImport() throws Exception {
+        genDir = setUpDirectory4Test("testOutlineImport");
+        Collection<File> files = new ArrayList<File>();
+        files.add(setupSrcFile4Reverse("SimpleClass.cpp"));
+        List<SettingsTypes.Setting> importSettings =
+            cppImp.getImportSettings();
+        assertEquals(1, importSettings.size());
+        SettingsTypes.BooleanSelection outline =
+            (SettingsTypes.BooleanSelection) importSettings.get(0);
+        assertFalse(outline.getDefaultValue());
+        outline.setSelected(true);
+        boolean incremental = Configuration.getBoolean(
+            CppImport.KEY_IMPORT_INCREMENTAL, false);
+        Configuration.setBoolean(CppImport.KEY_IMPORT_INCREMENTAL, true);
+        try {
+            cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+            Collection clss = getCoreHelper().getAllClasses(getRootModel());
+            Object simpleClass =
+                getModelElementAndAssertNotDuplicated(clss, "SimpleClass");
+            getModelElementAndAssertNotDuplicated(
+                getCoreHelper().getAllAttributes(simpleClass), "newAttr");
+            getModelElementAndAssertNotDuplicated(
+                getCoreHelper().getBehavioralFeatures(simpleClass),
+                "newOperation");
+            String manifest = getFacade().getTaggedValueValue(getRootModel(),
+                ImportManifest.TV_NAME_IMPORT_MANIFEST);
+            assertTrue(manifest == null
+                || !manifest.contains("SimpleClass.cpp"));
+        } finally {
+            Configuration.setBoolean(CppImport.KEY_IMPORT_INCREMENTAL,
+                incremental);
+        }
+    }
+
+    /**
+     * Files with the suffix of preprocessed files or which only directives
+     * are line markers aren't preprocessed again.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testIsPreprocessed() throws Exception {
+        genDir = setUpDirectory4Test("testIsPreprocessed");
+        assertTrue(CppImport.isPreprocessed(
+            setupSrcFile4Reverse("quadratic.i")));
+        assertFalse(CppImport.isPreprocessed(
+            setupSrcFile4Reverse("SimpleClass.cpp")));
+        File withLineMarkers = new File(genDir, "with_line_markers.cpp");
+        FileUtils.writeStringToFile(withLineMarkers,
+            "# 1 \"a.h\"\n#pragma once\nclass A {};\n");
+        assertTrue(CppImport.isPreprocessed(withLineMarkers));
+        File withInclude = new File(genDir, "with_include.cpp");
+        FileUtils.writeStringToFile(withInclude,
+            "# 1 \"a.h\"\n#include \"b.h\"\n");
+        assertFalse(CppImport.isPreprocessed(withInclude));
+    }
+
+    /**
+     * Namespaces with the same name in different parents are different model
+     * elements, and importing them again finds the existing ones instead of
+     * creating duplicates.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testNamespacesWithSameNameInSiblings() throws Exception {
+        genDir = setUpDirectory4Test("testNamespacesWithSameNameInSiblings");
+        Collection<File> files = new ArrayList<File>();
+        files.add(writeSrcFile("siblings.cpp",
+            "namespace a { namespace detail { int x; } }\n"
+            + "namespace b { namespace detail { int y; } }\n"));
+
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+        // 2nd call on purpose!
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+
+        Collection nss =
+            Model.getModelManagementHelper().getAllNamespaces(getRootModel());
+        Object a = getModelElementAndAssertNotDuplicated(nss, "a");
+        Object b = getModelElementAndAssertNotDuplicated(nss, "b");
+        Object aDetail = getModelElementAndAssertNotDuplicated(
+            getFacade().getOwnedElements(a), "detail");
+        Object bDetail = getModelElementAndAssertNotDuplicated(
+            getFacade().getOwnedElements(b), "detail");
+        assertNotSame(aDetail, bDetail);
+        List<Object> details = new ArrayList<Object>(nss);
+        details.remove(aDetail);
+        details.remove(bDetail);
+        assertNull(findModelElementWithName(details, "detail"));
+    }
+
+    /**
+     * Classes with the same name in sibling namespaces are different model
+     * elements, each one with its own members, although the classes are
+     * indexed in all the enclosing namespaces. Importing them again finds
+     * the existing classes instead of creating duplicates.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testClassesWithSameNameInSiblings() throws Exception {
+        genDir = setUpDirectory4Test("testClassesWithSameNameInSiblings");
+        Collection<File> files = new ArrayList<File>();
+        files.add(writeSrcFile("classes.cpp",
+            "namespace a { class C { public: void fa(); }; }\n"
+            + "namespace b { class C { public: void fb(); }; }\n"));
+
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+        // 2nd call on purpose!
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+
+        Collection nss =
+            Model.getModelManagementHelper().getAllNamespaces(getRootModel());
+        Object a = getModelElementAndAssertNotDuplicated(nss, "a");
+        Object b = getModelElementAndAssertNotDuplicated(nss, "b");
+        Object aC = getModelElementAndAssertNotDuplicated(
+            getCoreHelper().getAllClasses(a), "C");
+        Object bC = getModelElementAndAssertNotDuplicated(
+            getCoreHelper().getAllClasses(b), "C");
+        assertNotSame(aC, bC);
+        assertEquals(2, countModelElementsWithName(
+            getCoreHelper().getAllClasses(getRootModel()), "C"));
+
+        Collection aOpers = getCoreHelper().getBehavioralFeatures(aC);
+        getModelElementAndAssertNotDuplicated(aOpers, "fa");
+        assertNull(findModelElementWithName(aOpers, "fb"));
+        Collection bOpers = getCoreHelper().getBehavioralFeatures(bC);
+        getModelElementAndAssertNotDuplicated(bOpers, "fb");
+        assertNull(findModelElementWithName(bOpers, "fa"));
+    }
+
+    /**
+     * An operation of a header included by two translation units is modeled
+     * once.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testDuplicateOperationAcrossUnits() throws Exception {
+        genDir = setUpDirectory4Test("testDuplicateOperationAcrossUnits");
+        writeSrcFile("a.h", "class A { public: void f(int x); int g(); };\n");
+        Collection<File> files = new ArrayList<File>();
+        files.add(writeSrcFile("a1.cpp", "#include \"a.h\"\n"));
+        files.add(writeSrcFile("a2.cpp", "#include \"a.h\"\n"));
+
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+
+        Object a = getModelElementAndAssertNotDuplicated(
+            getCoreHelper().getAllClasses(getRootModel()), "A");
+        Collection opers = getCoreHelper().getBehavioralFeatures(a);
+        assertEquals(2, opers.size());
+        getModelElementAndAssertNotDuplicated(opers, "f");
+        getModelElementAndAssertNotDuplicated(opers, "g");
+    }
+
+    /**
+     * An operation overrides the virtual operation of a base class which was
+     * added by a later translation unit than the one that modeled the
+     * classes in between, although the search of the base operations of
+     * these was already memoized.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testOverrideOfBaseOperationDeclaredLater() throws Exception {
+        genDir = setUpDirectory4Test(
+            "testOverrideOfBaseOperationDeclaredLater");
+        Collection<File> files = new ArrayList<File>();
+        files.add(writeSrcFile("first.cpp", "class Base { };\n"
+            + "class Derived : public Base { };\n"
+            + "class First : public Derived { public: void f(); };\n"));
+        files.add(writeSrcFile("second.cpp",
+            "class Base { public: virtual void f(); };\n"
+            + "class Derived : public Base { };\n"
+            + "class Second : public Derived { public: void f(); };\n"));
+
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+
+        Collection classes = getCoreHelper().getAllClasses(getRootModel());
+        assertTrue("First::f() was modeled before Base::f().",
+            getFacade().isLeaf(getOperation(classes, "First", "f")));
+        assertFalse("Second::f() overrides the virtual Base::f().",
+            getFacade().isLeaf(getOperation(classes, "Second", "f")));
+    }
+
+    /**
+     * An operation overrides the virtual operation of a base class which
+     * became a base class of the classes in between after the search of the
+     * base operations of these was memoized.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testOverrideThroughGeneralizationAddedLater()
+        throws Exception {
+        genDir = setUpDirectory4Test(
+            "testOverrideThroughGeneralizationAddedLater");
+        Collection<File> files = new ArrayList<File>();
+        files.add(writeSrcFile("first.cpp",
+            "class Base { public: virtual void f(); };\n"
+            + "class Derived { };\n"
+            + "class First : public Derived { public: void f(); };\n"));
+        files.add(writeSrcFile("second.cpp",
+            "class Base { public: virtual void f(); };\n"
+            + "class Derived : public Base { };\n"
+            + "class Second : public Derived { public: void f(); };\n"));
+
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+
+        Collection classes = getCoreHelper().getAllClasses(getRootModel());
+        assertTrue("First::f() was modeled before Derived became a Base.",
+            getFacade().isLeaf(getOperation(classes, "First", "f")));
+        assertFalse("Second::f() overrides the virtual Base::f().",
+            getFacade().isLeaf(getOperation(classes, "Second", "f")));
+    }
+
+    /**
+     * The modeler is reused for the translation units of an import, so, the
+     * namespace, class and access specifier of the end of a unit must not
+     * leak into the next one, even if the unit was abandoned in the middle
+     * of a class, as when its parsing fails.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testModelerReusedAcrossUnits() throws Exception {
+        genDir = setUpDirectory4Test("testModelerReusedAcrossUnits");
+        Collection<File> files = new ArrayList<File>();
+        files.add(writeSrcFile("a.cpp",
+            "namespace n { class A { public: int x; }; }\n"));
+        files.add(writeSrcFile("b.cpp", "struct S { int y; };\n"
+            + "class B { int z; };\n"));
+
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+
+        Object model = getRootModel();
+        Collection classes = getCoreHelper().getAllClasses(model);
+        Object a = getModelElementAndAssertNotDuplicated(classes, "A");
+        assertEquals("n", getFacade().getName(getFacade().getNamespace(a)));
+        Object b = getModelElementAndAssertNotDuplicated(classes, "B");
+        assertEquals(model, getFacade().getNamespace(b));
+        Object z = getModelElementAndAssertNotDuplicated(
+            getCoreHelper().getAllAttributes(b), "z");
+        assertEquals(Model.getVisibilityKind().getPrivate(),
+            getFacade().getVisibility(z));
+
+        Modeler modeler = new ModelerImpl(proj);
+        modeler.beginTranslationUnit();
+        modeler.enterNamespaceScope("m");
+        modeler.beginClassDefinition(CPPvariables.OT_STRUCT, "Abandoned");
+        modeler.beginTranslationUnit();
+        modeler.beginClassDefinition(CPPvariables.OT_CLASS, "C");
+        modeler.endClassDefinition();
+        modeler.endTranslationUnit();
+        Object c = getModelElementAndAssertNotDuplicated(
+            getCoreHelper().getAllClasses(model), "C");
+        assertEquals(model, getFacade().getNamespace(c));
+        assertTrue(modeler.getNewElements().contains(c));
+        assertEquals(1, modeler.getNewElements().size());
+    }
+
+    /**
+     * The classes are tagged with the file where they are defined, which, for
+     * preprocessed files, is given by the line markers.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testSourceFileOfClasses() throws Exception {
+        genDir = setUpDirectory4Test("testSourceFileOfClasses");
+        writeSrcFile("h.h", "class InHeader { };\n");
+        Collection<File> files = new ArrayList<File>();
+        files.add(writeSrcFile("u.cpp",
+            "#include \"h.h\"\nclass InUnit { };\n"));
+        files.add(writeSrcFile("p.i", "# 1 \"lib/a.h\"\nclass InMarkedHeader"
+            + " { };\n# 3 \"p.cpp\"\nclass InMarkedUnit { };\n"));
+
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+
+        Collection classes = getCoreHelper().getAllClasses(getRootModel());
+        assertEquals(new File(genDir, "h.h").getPath(),
+            getSourceFile(classes, "InHeader"));
+        assertEquals(new File(genDir, "u.cpp").getPath(),
+            getSourceFile(classes, "InUnit"));
+        assertEquals("lib/a.h", getSourceFile(classes, "InMarkedHeader"));
+        assertEquals("p.cpp", getSourceFile(classes, "InMarkedUnit"));
+    }
+
+    /**
+     * The src_path tagged value, which is the directory where the code of a
+     * class is generated, isn't set nor changed by the import.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testSrcPathNotChangedByImport() throws Exception {
+        genDir = setUpDirectory4Test("testSrcPathNotChangedByImport");
+        Object kept = Model.getCoreFactory().buildClass("Kept",
+            getRootModel());
+        Model.getExtensionMechanismsHelper().addTaggedValue(kept,
+            Model.getExtensionMechanismsFactory().buildTaggedValue(
+                ProfileCpp.getTagDefinition("src_path"),
+                new String[] {"out"}));
+        Collection<File> files = new ArrayList<File>();
+        files.add(writeSrcFile("kept.cpp",
+            "class Kept { };\nclass Added { };\n"));
+
+        cppImp.parseFiles(proj, files, settings, new DummyMonitor());
+
+        Collection classes = getCoreHelper().getAllClasses(getRootModel());
+        assertEquals("out", getFacade().getTaggedValueValue(
+            getModelElementAndAssertNotDuplicated(classes, "Kept"),
+            "src_path"));
+        assertEquals(new File(genDir, "kept.cpp").getPath(),
+            getSourceFile(classes, "Kept"));
+        assertNull(getFacade().getTaggedValue(
+            getModelElementAndAssertNotDuplicated(classes, "Added"),
+            "src_path"));
+    }
+
+    private String getSourceFile(Collection classes, String className) {
+        return getFacade().getTaggedValueValue(
+            getModelElementAndAssertNotDuplicated(classes, className),
+            ProfileCpp.TV_NAME_SOURCE_FILE);
+    }
+
+    private Object getOperation(Collection classes, String className,
+            String operationName) {
+        Object cls = getModelElementAndAssertNotDuplicated(classes,
+            className);
+        return getModelElementAndAssertNotDuplicated(
+            getCoreHelper().getBehavioralFeatures(cls), operationName);
+    }
+
     private void assertParameters(Collection params, 
         String[][] paramsNameAndTypeName) {
         for (String[] paramNameAndTypeName : paramsNameAndTypeName) {
@@ -0,0 +1,174 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.anarres.cpp.CppReader;
+import org.anarres.cpp.Feature;
+import org.anarres.cpp.Preprocessor;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the {@link HeaderCache} class.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+public class TestHeaderCache extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = new File(System.getProperty("java.io.tmpdir"),
+            "TestHeaderCache");
+        new File(dir, "inc").mkdirs();
+        write("inc/common.h", "#ifndef COMMON_H\n#define COMMON_H\n"
+            + "#include \"other.h\"\n#define max(a,b) ((a)>(b)?(a):(b))\n"
+            + "int f(int x) { return max(x, OTHER); }\n#endif\n");
+        write("inc/other.h", "#ifndef OTHER_H\n#define OTHER_H\n"
+            + "#define OTHER 42\nclass Other { int o; };\n#endif\n");
+        write("inc/undef.h", "#undef max\nint max(int, int);\n"
+            + "#define LATER 7\nint later = LATER;\n");
+        write("a.cpp", "#include \"inc/common.h\"\n"
+            + "#include \"inc/common.h\"\nint a = max(1,2) + OTHER;\n"
+            + "#include \"inc/undef.h\"\nint b = LATER;\n");
+        write("b.cpp", "#include \"inc/common.h\"\n#include \"inc/undef.h\"\n"
+            + "#include \"inc/other.h\"\nint c = LATER + OTHER;\n"
+            + "int d = max(3,4);\n");
+        write("c.cpp", "#define OTHER 1\n#include \"inc/other.h\"\n"
+            + "int e = OTHER;\n");
+        new File(dir, "sys").mkdirs();
+        write("sys/vector", "#ifndef VECTOR\n#define VECTOR\n"
+            + "namespace std { class vector { int n; }; }\n#endif\n");
+        write("d.cpp", "#include <vector>\n#include \"inc/other.h\"\n"
+            + "#include <vector>\nstd::vector v;\n");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+        super.tearDown();
+    }
+
+    /**
+     * The translation units preprocessed with the cache must be the same as
+     * when preprocessed without it, while the headers included in the same
+     * macro context are only expanded once.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testSameResultAsPreprocessor() throws Exception {
+        HeaderCache cache = new HeaderCache();
+        String[] units = {"a.cpp", "b.cpp", "c.cpp"};
+        for (int pass = 0; pass < 2; pass++) {
+            for (String unit : units) {
+                File f = new File(dir, unit);
+                assertEquals("Unexpected expansion of " + unit + ".",
+                    normalize(preprocess(f, null)),
+                    normalize(cache.preprocess(f)));
+            }
+        }
+        assertTrue("Expected cached expansions to be reused.",
+            cache.getHits() > 0);
+        assertTrue("Headers shouldn't be expanded in every inclusion.",
+            cache.getMisses() < cache.getHits());
+    }
+
+    /**
+     * With a system include path, the line markers of the translation units
+     * preprocessed with the cache must be the same as when preprocessed
+     * without it, since the parser relies on them to tell the declarations
+     * of the system headers.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testSameLineMarkersAsPreprocessor() throws Exception {
+        List<String> systemIncludes = Collections.singletonList(
+            new File(dir, "sys").getPath());
+        HeaderCache cache = new HeaderCache(systemIncludes);
+        File f = new File(dir, "d.cpp");
+        String expected = normalize(preprocess(f, systemIncludes));
+        assertTrue("Expected a line marker for the system header.",
+            expected.contains("#line 1 \"" + new File(dir, "sys/vector")
+                .getPath() + "\""));
+        for (int pass = 0; pass < 2; pass++) {
+            assertEquals("Unexpected expansion of d.cpp.", expected,
+                normalize(cache.preprocess(f)));
+        }
+        assertTrue("Expected cached expansions to be reused.",
+            cache.getHits() > 0);
+    }
+
+    /**
+     * The macros used in a cached header are expanded once, even when they
+     * are defined in terms of themselves, since the cached expansion is
+     * replayed without expanding it again.
+     *
+     * @throws Exception when things go wrong
+     */
+    public void testCachedExpansionNotExpandedAgain() throws Exception {
+        write("inc/h.h", "int x = foo + BAR;\n");
+        write("e.cpp", "#define foo foo + 1\n#define BAR 2\n"
+            + "#include \"inc/h.h\"\n");
+        write("f.cpp", "#define foo foo + 1\n#define BAR 2\n"
+            + "#include \"inc/h.h\"\n");
+        HeaderCache cache = new HeaderCache();
+        assertEquals("int x = foo + 1 + 2;", normalize(
+            withoutLineMarkers(cache.preprocess(new File(dir, "e.cpp")))));
+        assertEquals("int x = foo + 1 + 2;", normalize(
+            withoutLineMarkers(cache.preprocess(new File(dir, "f.cpp")))));
+        assertEquals(1, cache.getHits());
+    }
+
+    private void write(String name, String content) throws IOException {
+        FileUtils.writeStringToFile(new File(dir, name), content);
+    }
+
+    private static String preprocess(File f, List<String> systemIncludes)
+        throws IOException {
+        Preprocessor preprocessor = new Preprocessor(f);
+        if (systemIncludes != null) {
+            preprocessor.setSystemIncludePath(systemIncludes);
+        }
+        preprocessor.addFeature(Feature.LINEMARKERS);
+        Reader reader = new CppReader(preprocessor);
+        try {
+            StringBuilder sb = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1) {
+                sb.append((char) c);
+            }
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String withoutLineMarkers(String text) {
+        return text.replaceAll("(?m)^#line .*$", "");
+    }
+
+    private static String normalize(String text) {
+        return text.replaceAll("\\s+", " ").trim();
+    }
+}
@@ -0,0 +1,106 @@
+/* $Id$
+ *****************************************************************************
+ * Copyright (c) 2026 Contributors - see below
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    agent
+ *****************************************************************************
+ */
+
+package org.argouml.language.cpp.reveng;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link SymbolTable} class.
+ *
+ * @author agent
+ * @since 0.35.2
+ */
+public class TestSymbolTable extends TestCase {
+
+    private SymbolTable symbols;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        symbols = new SymbolTable();
+    }
+
+    /**
+     * The symbols of a scope are forgotten when it is exited and the symbols
+     * which they hid are visible again.
+     */
+    public void testExitScope() {
+        symbols.put("A", CPPvariables.OT_CLASS);
+        symbols.enterScope();
+        symbols.put("A", CPPvariables.OT_ENUM);
+        symbols.put("B", CPPvariables.OT_STRUCT);
+        assertEquals(CPPvariables.OT_ENUM, symbols.get("A"));
+        assertTrue(symbols.containsKey("B"));
+        int version = symbols.getVersion();
+        symbols.exitScope();
+        assertEquals(CPPvariables.OT_CLASS, symbols.get("A"));
+        assertFalse(symbols.containsKey("B"));
+        assertNull(symbols.get("B"));
+        assertTrue(version != symbols.getVersion());
+        // the outermost scope is never exited
+        symbols.exitScope();
+        assertEquals(CPPvariables.OT_CLASS, symbols.get("A"));
+    }
+
+    /**
+     * Only the template parameters are declared in a template parameters
+     * scope, the other symbols, e.g., the name of a class template, outlive
+     * it.
+     */
+    public void testTemplateScope() {
+        int depth = symbols.getDepth();
+        assertFalse(symbols.isInTemplateScope());
+        symbols.enterTemplateScope();
+        assertTrue(symbols.isInTemplateScope());
+        symbols.putTemplateParameter("T", CPPvariables.OT_TYPE_DEF);
+        symbols.put("List", CPPvariables.OT_CLASS);
+        assertEquals(CPPvariables.OT_TYPE_DEF, symbols.get("T"));
+        symbols.enterScope();
+        assertFalse(symbols.isInTemplateScope());
+        symbols.put("T", CPPvariables.OT_CLASS);
+        symbols.exitScopes(depth);
+        assertEquals(depth, symbols.getDepth());
+        assertFalse(symbols.containsKey("T"));
+        assertEquals(CPPvariables.OT_CLASS, symbols.get("List"));
+    }
+
+    /**
+     * A symbol declared in an enclosing scope after an inner one hides it
+     * stays hidden until the inner scope is exited.
+     */
+    public void testDeclareHiddenSymbol() {
+        symbols.enterTemplateScope();
+        symbols.putTemplateParameter("T", CPPvariables.OT_TYPE_DEF);
+        symbols.put("T", CPPvariables.OT_CLASS);
+        assertEquals(CPPvariables.OT_TYPE_DEF, symbols.get("T"));
+        symbols.exitScope();
+        assertEquals(CPPvariables.OT_CLASS, symbols.get("T"));
+    }
+
+    /**
+     * Only the symbols of the outermost scope are given as the ones that the
+     * translation unit declared.
+     */
+    public void testGetOutermostSymbols() {
+        symbols.put("A", CPPvariables.OT_CLASS);
+        symbols.enterScope();
+        symbols.put("A", CPPvariables.OT_ENUM);
+        symbols.put("B", CPPvariables.OT_STRUCT);
+        Map<String, String> outermost = symbols.getOutermostSymbols();
+        assertEquals(1, outermost.size());
+        assertEquals(CPPvariables.OT_CLASS, outermost.get("A"));
+    }
+}